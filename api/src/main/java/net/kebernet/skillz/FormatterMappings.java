@@ -16,15 +16,28 @@
 package net.kebernet.skillz;
 
 import javax.inject.Provider;
-import java.util.Optional;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A class that contains default Formatter mappings per class type.
+ * <p>
+ * A type without a mapping of its own uses the mapping for its nearest superclass, then for the
+ * interfaces it implements, then the mapping for <code>Object</code>. The result is resolved once per
+ * type and cached until another mapping is added. When a provider returns a Formatter annotated with
+ * {@link Singleton} the instance itself is cached, unless {@link #setCacheSingletons(boolean)} turns
+ * that off.
+ * </p>
  */
 public class FormatterMappings {
 
     private ConcurrentHashMap<Class<?>, Provider<Formatter<?>>> mappers = new ConcurrentHashMap<>();
+    private volatile ClassValue<Provider<Formatter<?>>> resolved = newResolver();
+    private volatile boolean cacheSingletons = true;
 
     public FormatterMappings(){
     }
@@ -41,6 +54,7 @@ public class FormatterMappings {
             throw new SkillzException("You have attempted to register two formatters for the type "+
                 type.getCanonicalName());
         }
+        this.resolved = newResolver();
     }
 
     /**
@@ -54,6 +68,18 @@ public class FormatterMappings {
             throw new SkillzException("You have attempted to register two formatters for the type "+
                     type.getCanonicalName());
         }
+        this.resolved = newResolver();
+    }
+
+    /**
+     * Sets whether Formatter instances annotated with {@link Singleton} are kept after the
+     * first lookup, rather than requested from their provider every time. Defaults to true.
+     * @param cacheSingletons Whether to cache singleton formatters.
+     */
+    @SuppressWarnings("unused")
+    public void setCacheSingletons(boolean cacheSingletons){
+        this.cacheSingletons = cacheSingletons;
+        this.resolved = newResolver();
     }
 
     /**
@@ -63,8 +89,82 @@ public class FormatterMappings {
      */
     @SuppressWarnings("unchecked")
     public  Formatter findMappingFunction(Class<?> type){
-        return Optional.ofNullable(mappers.get(type))
-                .orElseThrow(()-> new SkillzException("Could not find mapping function to convert "+type.getCanonicalName()+" to a SpeechletResponse"))
-                .get();
+        return resolved.get(type).get();
+    }
+
+    private ClassValue<Provider<Formatter<?>>> newResolver(){
+        return new ClassValue<Provider<Formatter<?>>>() {
+            @Override
+            protected Provider<Formatter<?>> computeValue(Class<?> type) {
+                return resolve(type);
+            }
+        };
+    }
+
+    private Provider<Formatter<?>> resolve(Class<?> type){
+        Provider<Formatter<?>> provider = findProvider(type);
+        if(provider == null){
+            return () -> {
+                throw new SkillzException("Could not find mapping function to convert "+type.getCanonicalName()+" to a SpeechletResponse");
+            };
+        }
+        return cacheSingletons ? new SingletonProvider(provider) : provider;
+    }
+
+    private Provider<Formatter<?>> findProvider(Class<?> type){
+        for(Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()){
+            Provider<Formatter<?>> provider = mappers.get(c);
+            if(provider != null){
+                return provider;
+            }
+        }
+        // Breadth first through the interfaces, nearest first.
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        Set<Class<?>> seen = new HashSet<>();
+        for(Class<?> c = type; c != null; c = c.getSuperclass()){
+            queue.add(c);
+        }
+        while(!queue.isEmpty()){
+            for(Class<?> i : queue.poll().getInterfaces()){
+                if(seen.add(i)){
+                    Provider<Formatter<?>> provider = mappers.get(i);
+                    if(provider != null){
+                        return provider;
+                    }
+                    queue.add(i);
+                }
+            }
+        }
+        return mappers.get(Object.class);
+    }
+
+    /**
+     * Decides from the first Formatter actually returned whether it is a {@link Singleton}, and
+     * keeps it if so. Nothing is requested from the provider until a response needs formatting.
+     */
+    private static class SingletonProvider implements Provider<Formatter<?>> {
+        private final Provider<Formatter<?>> provider;
+        private volatile Formatter<?> singleton;
+        private volatile boolean checked;
+
+        SingletonProvider(Provider<Formatter<?>> provider){
+            this.provider = provider;
+        }
+
+        @Override
+        public Formatter<?> get() {
+            Formatter<?> formatter = singleton;
+            if(formatter != null){
+                return formatter;
+            }
+            formatter = provider.get();
+            if(!checked && formatter != null){
+                if(formatter.getClass().isAnnotationPresent(Singleton.class)){
+                    singleton = formatter;
+                }
+                checked = true;
+            }
+            return formatter;
+        }
     }
 }
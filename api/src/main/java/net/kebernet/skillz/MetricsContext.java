@@ -0,0 +1,70 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz;
+
+import javax.annotation.Nullable;
+
+/**
+ * Carries the metrics, skill and intent for the request being handled on the current thread, so
+ * that Formatters and Bundles can record timings without being bound to a single request.
+ * One context object is kept per thread and reused.
+ */
+public final class MetricsContext {
+    private static final ThreadLocal<MetricsContext> CURRENT = ThreadLocal.withInitial(MetricsContext::new);
+
+    private SkillzMetrics metrics = SkillzMetrics.NONE;
+    private String skill;
+    private String intent;
+
+    private MetricsContext() {
+    }
+
+    /**
+     * Binds the current thread to a skill and intent.
+     * @param metrics The metrics to record to.
+     * @param skill The skill path.
+     * @param intent The intent or event name.
+     */
+    public static void enter(SkillzMetrics metrics, String skill, @Nullable String intent) {
+        MetricsContext context = CURRENT.get();
+        context.metrics = metrics;
+        context.skill = skill;
+        context.intent = intent;
+    }
+
+    /**
+     * Clears the binding for the current thread.
+     */
+    public static void exit() {
+        MetricsContext context = CURRENT.get();
+        context.metrics = SkillzMetrics.NONE;
+        context.skill = null;
+        context.intent = null;
+    }
+
+    /**
+     * Records a timing against the skill and intent bound to the current thread. Does nothing if
+     * the thread isn't bound.
+     * @param stage The stage.
+     * @param nanos The elapsed time in nanoseconds.
+     */
+    public static void time(SkillzMetrics.Stage stage, long nanos) {
+        MetricsContext context = CURRENT.get();
+        if (context.metrics != SkillzMetrics.NONE) {
+            context.metrics.time(context.skill, context.intent, stage, nanos);
+        }
+    }
+}
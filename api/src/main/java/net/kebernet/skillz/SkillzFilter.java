@@ -15,16 +15,14 @@
  */
 package net.kebernet.skillz;
 
-import com.amazon.speech.speechlet.Speechlet;
 import com.google.common.base.Strings;
-import com.google.common.collect.ArrayListMultimap;
-import net.kebernet.invoker.runtime.impl.IntrospectionData;
-import net.kebernet.invoker.runtime.impl.InvokableMethod;
+import com.google.common.collect.ImmutableMap;
 import net.kebernet.skillz.impl.DefaultTypeFactory;
+import net.kebernet.skillz.impl.DispatchTable;
 import net.kebernet.skillz.impl.DynamicServlet;
 import net.kebernet.skillz.impl.DynamicSpeechlet;
 import net.kebernet.skillz.impl.Registry;
-import net.kebernet.skillz.util.Pool;
+import net.kebernet.skillz.impl.SignatureVerifier;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -37,7 +35,8 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Optional;
+import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -50,14 +49,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 @Singleton
 public class SkillzFilter implements Filter {
     private static final Logger LOGGER = Logger.getLogger(SkillzFilter.class.getCanonicalName());
-    /** We are pooling servlet instances so that we don't run into threading issues replacing the
-     * speechlet on the servlet per request. This may need to be configurable in the future.
-     */
-    private final Pool<DynamicServlet> pool;
     private final TypeFactory factory;
     private final Registry registry;
     private final FormatterMappings mappings;
+    /** One servlet per skill path, built once from the Registry's dispatch tables. The servlets
+     * hold no per-request state, so they are shared by all requests.
+     */
+    private final ImmutableMap<String, DynamicServlet> servlets;
     private String pathPrefix = "/";
+    private SkillzMetrics metrics = SkillzMetrics.NONE;
 
 
     /**
@@ -68,10 +68,26 @@ public class SkillzFilter implements Filter {
      */
     @Inject
     public SkillzFilter(Registry registry, TypeFactory factory, FormatterMappings mappings){
+        this(registry, factory, mappings, DynamicServlet::new);
+    }
+
+    /**
+     * Creates a filter that serves each skill with a DynamicServlet subclass.
+     * @param registry The registry to use.
+     * @param factory The TypeFactory to build instances with.
+     * @param mappings FormatterMappings for building SpeechletResponses
+     * @param servletFactory Creates the servlet for each skill's speechlet.
+     */
+    protected SkillzFilter(Registry registry, TypeFactory factory, FormatterMappings mappings,
+                           Function<DynamicSpeechlet, ? extends DynamicServlet> servletFactory){
         this.factory = factory;
         this.registry = registry;
         this.mappings = mappings;
-        this.pool =  new Pool<>(factory, DynamicServlet.class, 128);
+        ImmutableMap.Builder<String, DynamicServlet> builder = ImmutableMap.builder();
+        for(DispatchTable table : registry.getAllDispatchTables()){
+            builder.put(table.getPath(), servletFactory.apply(new DynamicSpeechlet(table, mappings, registry, factory)));
+        }
+        this.servlets = builder.build();
     }
 
 
@@ -99,6 +115,31 @@ public class SkillzFilter implements Filter {
         return mappings;
     }
 
+    @SuppressWarnings("unused")
+    public SkillzMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics implementation every skill served by this filter records to.
+     * @param metrics The SkillzMetrics to use.
+     */
+    public void setMetrics(SkillzMetrics metrics){
+        checkNotNull(metrics);
+        this.metrics = metrics;
+        servlets.values().forEach(s -> s.getDynamicSpeechlet().setMetrics(metrics));
+    }
+
+    /**
+     * Sets the verifier every skill served by this filter checks request signatures with.
+     * @param signatureVerifier The SignatureVerifier to use.
+     */
+    @SuppressWarnings("unused")
+    public void setSignatureVerifier(SignatureVerifier signatureVerifier){
+        checkNotNull(signatureVerifier);
+        servlets.values().forEach(s -> s.setSignatureVerifier(signatureVerifier));
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         if(filterConfig.getInitParameter("pathPrefix") != null) {
@@ -123,32 +164,19 @@ public class SkillzFilter implements Filter {
         if(!path.startsWith("/")){
             path = "/"+path;
         }
-        LOGGER.finer("Checking for Skill at "+path +" (prefix: "+pathPrefix+" requestURI: "+request.getRequestURI());
+        if(LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.finer("Checking for Skill at " + path + " (prefix: " + pathPrefix + " requestURI: " + request.getRequestURI());
+        }
         if(!Strings.isNullOrEmpty(path)){
-            Optional<IntrospectionData> handler = registry.getDataForPath(path);
-            if(!handler.isPresent()){ // Nothing to handle.
+            DynamicServlet servlet = servlets.get(path);
+            if(servlet == null){ // Nothing to handle.
                 chain.doFilter(request, response);
                 return;
             }
-
-            IntrospectionData data = handler.get();
-            LOGGER.finer("Handling skill request for "+path+" with "+data.getType());
-            Object instance = factory.create(data.getType());
-            final ArrayListMultimap<String, InvokableMethod> methods = ArrayListMultimap.create();
-            data.getMethods().forEach(m->methods.put(m.getName(), m));
-
-            // Check a servlet out and invoke it.
-            DynamicSpeechlet speechlet = new DynamicSpeechlet(methods, data, mappings, registry, instance, factory);
-            DynamicServlet servlet;
-            try {
-                servlet = pool.checkout();
-            } catch (RuntimeException e) {
-                throw new ServletException(e);
+            if(LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.finer("Handling skill request for " + path + " with " + servlet.getDynamicSpeechlet().getDispatchTable().getType());
             }
-            servlet.setSpeechlet(speechlet);
             servlet.service(req, res);
-            servlet.setSpeechlet((Speechlet) null);
-            pool.checkin(servlet);
         }
     }
 
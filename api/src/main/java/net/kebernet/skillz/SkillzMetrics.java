@@ -0,0 +1,107 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz;
+
+import javax.annotation.Nullable;
+
+/**
+ * The metrics SPI for Skillz. An implementation receives timings for each stage of handling a
+ * request and counts of notable events, per skill and per intent. Implementations are called on
+ * the request threads, so they must be thread-safe and cheap.
+ *
+ * @see SkillzFilter#setMetrics(SkillzMetrics)
+ */
+public interface SkillzMetrics {
+
+    /**
+     * A metrics implementation that discards everything.
+     */
+    SkillzMetrics NONE = new SkillzMetrics() {
+        @Override
+        public void time(String skill, @Nullable String intent, Stage stage, long nanos) {
+        }
+
+        @Override
+        public void count(String skill, @Nullable String intent, Event event) {
+        }
+    };
+
+    /**
+     * The timed stages of handling a request.
+     */
+    enum Stage {
+        /**
+         * Reading, verifying and parsing the request envelope, up to the point the skill is dispatched.
+         */
+        PARSE,
+        /**
+         * Binding slots and expression values to the skill method parameters.
+         */
+        BIND,
+        /**
+         * Running the skill method.
+         */
+        INVOKE,
+        /**
+         * Formatting the value the skill method returned into a SpeechletResponse.
+         */
+        FORMAT,
+        /**
+         * Rendering output speech from a Bundle, as part of FORMAT.
+         */
+        RENDER_SPEECH,
+        /**
+         * Rendering card content from a Bundle, as part of FORMAT.
+         */
+        RENDER_CARD
+    }
+
+    /**
+     * Counted events.
+     */
+    enum Event {
+        /**
+         * A request failed with an exception.
+         */
+        ERROR,
+        /**
+         * A request named an intent the skill has no handler for.
+         */
+        NO_HANDLER,
+        /**
+         * A handler missed its {@link net.kebernet.skillz.annotation.Deadline}, and the
+         * fallback was returned.
+         */
+        TIMEOUT
+    }
+
+    /**
+     * Records the time taken by a stage.
+     * @param skill The path of the skill.
+     * @param intent The intent or event name, or null if it isn't known.
+     * @param stage The stage.
+     * @param nanos The elapsed time in nanoseconds.
+     */
+    void time(String skill, @Nullable String intent, Stage stage, long nanos);
+
+    /**
+     * Counts an event.
+     * @param skill The path of the skill.
+     * @param intent The intent or event name, or null if it isn't known.
+     * @param event The event.
+     */
+    void count(String skill, @Nullable String intent, Event event);
+}
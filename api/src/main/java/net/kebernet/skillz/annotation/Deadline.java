@@ -0,0 +1,51 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits how long a launch or intent handler has to respond. When the deadline passes, the
+ * handler is abandoned and a fallback response is returned instead. On a {@link Skill} class
+ * it applies to every launch and intent handler that doesn't declare its own. Session started
+ * and ended handlers can't have one.
+ * <p>
+ * A handler with a deadline is invoked off the request thread, so the request can be
+ * answered while it is still running. Its eventual result is discarded.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Deadline {
+    /**
+     * The time the handler has to respond, including formatting its result.
+     * @return The deadline in milliseconds.
+     */
+    long value();
+
+    /**
+     * The type of the fallback. One instance is created with the
+     * {@link net.kebernet.skillz.TypeFactory}, and it is formatted with the
+     * {@link net.kebernet.skillz.FormatterMappings} for its type when the deadline passes.
+     * @return The fallback type.
+     */
+    Class<?> fallback();
+}
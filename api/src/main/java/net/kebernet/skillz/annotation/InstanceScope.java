@@ -0,0 +1,36 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.annotation;
+
+/**
+ * Controls how instances of a type are reused between requests.
+ */
+public enum InstanceScope {
+    /**
+     * A single instance is created on first use and shared by every request. The type
+     * must be thread-safe.
+     */
+    SINGLETON,
+    /**
+     * Instances are checked out of a bounded pool for each request, so no two requests
+     * use the same instance at the same time.
+     */
+    POOLED,
+    /**
+     * A new instance is created for every request.
+     */
+    PER_REQUEST
+}
@@ -25,12 +25,25 @@ import java.lang.annotation.Target;
 
 /**
  *  This annotation allows you to declare a Formatter per-method to format your return types to
- *  SpeechletResponses. Formatter instances will be requested per-request from the
- *  {@link net.kebernet.skillz.TypeFactory}.
+ *  SpeechletResponses. Formatter instances are created with the {@link net.kebernet.skillz.TypeFactory}
+ *  and reused according to the {@link #scope()}. A Formatter type annotated with
+ *  {@link javax.inject.Singleton} is always shared.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Inherited
 @Target(ElementType.METHOD)
 public @interface ResponseFormatter {
     Class<? extends Formatter> value();
+
+    /**
+     * How instances of the formatter are reused between requests.
+     * @return The scope, PER_REQUEST by default.
+     */
+    InstanceScope scope() default InstanceScope.PER_REQUEST;
+
+    /**
+     * The maximum number of instances when the scope is {@link InstanceScope#POOLED}.
+     * @return The pool size.
+     */
+    int poolSize() default 16;
 }
@@ -34,4 +34,24 @@ public @interface Skill {
      * @return The final path component to map the skill to.
      */
     String path();
+
+    /**
+     * How instances of the skill are reused between requests. Instances are always
+     * created with the {@link net.kebernet.skillz.TypeFactory}.
+     * @return The scope, PER_REQUEST by default.
+     */
+    InstanceScope scope() default InstanceScope.PER_REQUEST;
+
+    /**
+     * The maximum number of instances when the scope is {@link InstanceScope#POOLED}.
+     * @return The pool size.
+     */
+    int poolSize() default 16;
+
+    /**
+     * The maximum number of response handler invocations for the skill in progress at once.
+     * Further requests wait up to a second for one to complete, then fail.
+     * @return The limit, or 0 for no limit.
+     */
+    int maxConcurrency() default 0;
 }
@@ -21,15 +21,21 @@ import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.ui.Card;
 import com.amazon.speech.ui.OutputSpeech;
 import com.amazon.speech.ui.Reprompt;
-import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import net.kebernet.skillz.Formatter;
+import net.kebernet.skillz.MetricsContext;
 import net.kebernet.skillz.SkillzException;
+import net.kebernet.skillz.SkillzMetrics;
 import net.kebernet.skillz.builder.RepromptBuilder;
 import net.kebernet.skillz.builder.SimpleCardBuilder;
 import net.kebernet.skillz.builder.StandardCardBuilder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 /**
@@ -38,6 +44,13 @@ import java.util.logging.Logger;
 @SuppressWarnings("unused")
 public abstract class AbstractBundleFormatter<T> implements Formatter<T> {
     private static final Logger LOGGER = Logger.getLogger(AbstractBundleFormatter.class.getCanonicalName());
+    /**
+     * The response built for the first request, when the response is constant. Keyed by the
+     * formatter class and its bundles so formatters created per request still share it.
+     */
+    private static final Cache<ConstantKey, SpeechletResponse> CONSTANT_RESPONSES = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
     private final Bundle bundle;
     private final Bundle repromptBundle;
 
@@ -54,9 +67,26 @@ public abstract class AbstractBundleFormatter<T> implements Formatter<T> {
 
     @Override
     public SpeechletResponse apply(T t, SpeechletRequest request, Session session) {
+        if(isConstantResponse() && bundle.isConstant() && (repromptBundle == null || repromptBundle.isConstant())){
+            try {
+                return CONSTANT_RESPONSES.get(new ConstantKey(getClass(), bundle, repromptBundle),
+                        () -> ResponseTemplate.prepare(build(t, request, session)));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause());
+                throw new SkillzException("Unable to build constant response", e.getCause());
+            }
+        }
+        return build(t, request, session);
+    }
+
+    private SpeechletResponse build(T t, SpeechletRequest request, Session session) {
+        long start = System.nanoTime();
         OutputSpeech speech = bundle.createOutputSpeech(t, request, session);
+        long rendered = System.nanoTime();
+        MetricsContext.time(SkillzMetrics.Stage.RENDER_SPEECH, rendered - start);
         String cardContent = bundle.createCardContent(t, request, session);
-        cardContent = truncateCardContent(cardContent);
+        MetricsContext.time(SkillzMetrics.Stage.RENDER_CARD, System.nanoTime() - rendered);
+        cardContent = bundle.limitCardContent(cardContent);
         String cardLargeImage = getCardLargeImage(t,request, session);
         Card card = null;
         if(cardLargeImage != null){
@@ -90,29 +120,16 @@ public abstract class AbstractBundleFormatter<T> implements Formatter<T> {
 
     }
 
-    private String truncateCardContent(String cardContent) {
-        if(cardContent == null){
-            return cardContent;
-        }
-        if(cardContent.length() < 8000){
-            return cardContent;
-        }
-        StringBuilder sb = new StringBuilder();
-        int lineCount = 0;
-        for(String line : Splitter.on('\n')
-                .split(cardContent)){
-            if(sb.length() == 0 && line.length() >= 8000){
-                LOGGER.warning("Card content is over the limit and will be truncated.");
-                return line.substring(0, 7999);
-            }
-            if(sb.length() + line.length() >= 7999){
-                LOGGER.warning("Card content is too long and will be truncated to "+lineCount);
-                return sb.toString();
-            }
-            sb.append(line).append('\n');
-            lineCount++;
-        }
-        return sb.toString();
+    /**
+     * Indicates that the response doesn't depend on the value, request or session, as with help or stop
+     * messages. If this returns true and the bundles are constant, the response is built once and the
+     * same instance is returned every time, prepared as a {@link ResponseTemplate}. The response is shared
+     * by every instance of the formatter class constructed with the same bundle instances. Defaults to false.
+     * @return true if the response is always the same.
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected boolean isConstantResponse() {
+        return false;
     }
 
     /**
@@ -152,4 +169,37 @@ public abstract class AbstractBundleFormatter<T> implements Formatter<T> {
      */
     @SuppressWarnings("WeakerAccess")
     public abstract String getCardSmallImage(T t, SpeechletRequest request, Session session);
+
+    /**
+     * Identifies a constant response by the formatter class and the identity of its bundles.
+     */
+    private static final class ConstantKey {
+        private final Class<?> type;
+        private final Bundle bundle;
+        private final Bundle repromptBundle;
+
+        private ConstantKey(Class<?> type, Bundle bundle, @Nullable Bundle repromptBundle) {
+            this.type = type;
+            this.bundle = bundle;
+            this.repromptBundle = repromptBundle;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ConstantKey key = (ConstantKey) o;
+
+            return type == key.type && bundle == key.bundle && repromptBundle == key.repromptBundle;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + System.identityHashCode(bundle);
+            result = 31 * result + System.identityHashCode(repromptBundle);
+            return result;
+        }
+    }
 }
@@ -40,4 +40,23 @@ public interface Bundle {
      * @return Card content based on the response object.
      */
     String createCardContent(Object response, SpeechletRequest request, Session session);
+
+    /**
+     * Shortens card content to fit on an Alexa card. Implementations and formatters
+     * should pass card content through this before using it.
+     * @param cardContent The card content.
+     * @return The content, shortened with {@link CardContentLimiter} if needed, or null if it is empty.
+     */
+    default String limitCardContent(String cardContent) {
+        return CardContentLimiter.limit(cardContent);
+    }
+
+    /**
+     * Indicates whether this bundle returns the same speech and card content for every response,
+     * so that formatters can build the response once and reuse it.
+     * @return true if the output never changes.
+     */
+    default boolean isConstant() {
+        return false;
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import javax.annotation.Nullable;
+import java.util.logging.Logger;
+
+/**
+ * Shortens card content to fit the Alexa card size limit. Content that is too long is cut at the
+ * last space or line break that fits, and ends with an ellipsis. This looks at each character at
+ * most once.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CardContentLimiter {
+    private static final Logger LOGGER = Logger.getLogger(CardContentLimiter.class.getCanonicalName());
+    /**
+     * The maximum number of characters Alexa allows on a card.
+     */
+    public static final int MAX_CARD_LENGTH = 8000;
+    private static final String ELLIPSIS = "...";
+
+    private CardContentLimiter(){}
+
+    /**
+     * Limits content to {@link #MAX_CARD_LENGTH} characters.
+     * @param content The card content.
+     * @return The content, shortened if needed, or null if it is null or empty.
+     */
+    @Nullable
+    public static String limit(@Nullable String content){
+        return limit(content, MAX_CARD_LENGTH);
+    }
+
+    /**
+     * Limits content to a number of characters.
+     * @param content The card content.
+     * @param maxLength The maximum length, including the ellipsis. Must be more than 3.
+     * @return The content, shortened if needed, or null if it is null or empty.
+     */
+    @Nullable
+    public static String limit(@Nullable String content, int maxLength){
+        if(content == null || content.isEmpty()){
+            return null;
+        }
+        if(content.length() <= maxLength){
+            return content;
+        }
+        int cut = maxLength - ELLIPSIS.length();
+        int end = cut;
+        // The character at the cut is the first one dropped, so a break there still keeps the word before it.
+        while(end > 0 && !isBreak(content.charAt(end))){
+            end--;
+        }
+        if(end == 0){
+            end = cut;
+        }
+        while(end > 0 && isBreak(content.charAt(end - 1))){
+            end--;
+        }
+        LOGGER.warning("Card content is "+content.length()+" characters and will be truncated to "+end);
+        return new StringBuilder(end + ELLIPSIS.length())
+                .append(content, 0, end)
+                .append(ELLIPSIS)
+                .toString();
+    }
+
+    private static boolean isBreak(char c){
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+}
@@ -45,6 +45,9 @@ import java.util.logging.Logger;
  * <code>ssml</code> is present, it will be used to format an <code>SsmlSpeechOutput</code>. If that is not present,
  * the <code>txt</code> template will be used to create a <code>PlainTextSpeechOutput</code> response.
  * </p>
+ * <p>
+ * The speech is built once, and the same instance is returned for every response, so it should not be modified.
+ * </p>
  */
 @SuppressWarnings("unused")
 public class ConstantBundle implements Bundle {
@@ -53,6 +56,10 @@ public class ConstantBundle implements Bundle {
     private String ssml;
     private String txt;
     private String card;
+    /**
+     * The speech, built once. The same instance is returned for every response.
+     */
+    private final OutputSpeech speech;
 
     /**
      * Creates a new bundle based on the classpath resource "bundleName" and the given language code.
@@ -65,6 +72,7 @@ public class ConstantBundle implements Bundle {
         this.ssml = readFromResource(bundleName, languageCode, "ssml");
         this.txt = readFromResource(bundleName, languageCode, "txt");
         this.card = readFromResource(bundleName, languageCode, "card");
+        this.speech = ssml != null || txt != null ? buildOutputSpeech() : null;
     }
 
     private static String readFromResource(String resourceBaseName, String languageCode, String fileType){
@@ -83,14 +91,23 @@ public class ConstantBundle implements Bundle {
     }
 
 
-    @Override
-    public OutputSpeech createOutputSpeech(Object response, SpeechletRequest request, Session session) {
+    private OutputSpeech buildOutputSpeech() {
         return ssml != null ? SsmlOutputBuilder.withSsml(ssml).withId("urn:ssml:"+this.bundleName).build()
                 : PlainTextOutputBuilder.withText(txt).withId("urn:txt:"+this.bundleName).build();
     }
 
+    @Override
+    public OutputSpeech createOutputSpeech(Object response, SpeechletRequest request, Session session) {
+        return speech != null ? speech : buildOutputSpeech();
+    }
+
     @Override
     public String createCardContent(Object response, SpeechletRequest request, Session session) {
         return card;
     }
+
+    @Override
+    public boolean isConstant() {
+        return true;
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.kebernet.skillz.SkillzException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The serialized response envelope for a SpeechletResponse that never changes. The envelope
+ * is serialized once, when the response is prepared, and each request only has to append its
+ * session attributes. Responses are matched by identity, so a prepared response must not be
+ * modified afterwards.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ResponseTemplate {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final Cache<SpeechletResponse, ResponseTemplate> TEMPLATES = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+    private static final byte[] SESSION_ATTRIBUTES = ",\"sessionAttributes\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EMPTY_ATTRIBUTES = "{}".getBytes(StandardCharsets.UTF_8);
+    private static final byte END = '}';
+    /**
+     * The envelope with the version and response, without the closing brace.
+     */
+    private final byte[] prefix;
+
+    private ResponseTemplate(byte[] prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Serializes a response that will be returned unchanged for every request, so the servlet
+     * can write it without serializing it again.
+     * @param response The response. It must not be modified after this is called.
+     * @return The same response.
+     */
+    public static SpeechletResponse prepare(SpeechletResponse response) {
+        checkNotNull(response);
+        if (TEMPLATES.getIfPresent(response) == null) {
+            SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+            envelope.setVersion(Sdk.VERSION);
+            envelope.setResponse(response);
+            try {
+                byte[] json = envelope.toJsonBytes();
+                if (json.length == 0 || json[json.length - 1] != END) {
+                    throw new SkillzException("Unexpected response envelope " + new String(json, StandardCharsets.UTF_8));
+                }
+                TEMPLATES.put(response, new ResponseTemplate(Arrays.copyOf(json, json.length - 1)));
+            } catch (IOException e) {
+                throw new SkillzException("Unable to serialize response " + response, e);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Finds the template for a prepared response.
+     * @param response The response returned to the servlet.
+     * @return The template, or null if the response was not prepared.
+     */
+    @Nullable
+    public static ResponseTemplate lookup(@Nullable SpeechletResponse response) {
+        return response == null ? null : TEMPLATES.getIfPresent(response);
+    }
+
+    /**
+     * Serializes the session attributes for the envelope.
+     * @param sessionAttributes The attributes, or null if the envelope has none.
+     * @return The JSON for the attributes, or null.
+     * @throws IOException If the attributes can't be serialized.
+     */
+    @Nullable
+    public byte[] serializeAttributes(@Nullable Map<String, Object> sessionAttributes) throws IOException {
+        if (sessionAttributes == null) {
+            return null;
+        }
+        return sessionAttributes.isEmpty() ? EMPTY_ATTRIBUTES : MAPPER.writeValueAsBytes(sessionAttributes);
+    }
+
+    /**
+     * The size of the envelope with the attributes spliced in.
+     * @param attributes The result of {@link #serializeAttributes(Map)}.
+     * @return The number of bytes {@link #writeTo(OutputStream, byte[])} will write.
+     */
+    public int length(@Nullable byte[] attributes) {
+        return prefix.length + (attributes == null ? 0 : SESSION_ATTRIBUTES.length + attributes.length) + 1;
+    }
+
+    /**
+     * Writes the envelope with the attributes spliced in.
+     * @param out The stream to write to.
+     * @param attributes The result of {@link #serializeAttributes(Map)}.
+     * @throws IOException If the stream fails.
+     */
+    public void writeTo(OutputStream out, @Nullable byte[] attributes) throws IOException {
+        out.write(prefix);
+        if (attributes != null) {
+            out.write(SESSION_ATTRIBUTES);
+            out.write(attributes);
+        }
+        out.write(END);
+    }
+
+    /**
+     * Copies the envelope with the attributes spliced in into a new array.
+     * @param attributes The result of {@link #serializeAttributes(Map)}.
+     * @return The envelope, {@link #length(byte[])} bytes long.
+     */
+    public byte[] toBytes(@Nullable byte[] attributes) {
+        byte[] bytes = Arrays.copyOf(prefix, length(attributes));
+        int offset = prefix.length;
+        if (attributes != null) {
+            System.arraycopy(SESSION_ATTRIBUTES, 0, bytes, offset, SESSION_ATTRIBUTES.length);
+            offset += SESSION_ATTRIBUTES.length;
+            System.arraycopy(attributes, 0, bytes, offset, attributes.length);
+            offset += attributes.length;
+        }
+        bytes[offset] = END;
+        return bytes;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import net.kebernet.skillz.SkillzException;
+import ognl.Node;
+import ognl.Ognl;
+import ognl.OgnlContext;
+import ognl.OgnlException;
+import ognl.enhance.ExpressionAccessor;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single {@link net.kebernet.skillz.annotation.ExpressionValue} expression. The expression is
+ * parsed when it is created. Simple dotted paths are evaluated as a {@link PropertyPath} of
+ * getter calls. For everything else, the first evaluation has OGNL compile the expression to bytecode
+ * with Javassist, using the types of the actual values in the context. Later evaluations with the same
+ * request type use the compiled accessor. Anything else, or an expression that won't compile, is
+ * evaluated by the interpreter.
+ */
+class CompiledExpression {
+    private static final Logger LOGGER = Logger.getLogger(CompiledExpression.class.getCanonicalName());
+    /**
+     * How many times to try compiling before settling for the interpreter. Compilation can fail
+     * on a particular request, for example when part of the path is null.
+     */
+    private static final int MAX_COMPILE_ATTEMPTS = 3;
+    private static final String REQUEST = "request";
+    private static final String SESSION = "session";
+    private static final ThreadLocal<OgnlContext> CONTEXTS = ThreadLocal.withInitial(OgnlContext::new);
+
+    private final String expression;
+    private final Object tree;
+    @Nullable
+    private final PropertyPath path;
+    private volatile Compiled compiled;
+    private volatile int attempts;
+
+    CompiledExpression(String expression) {
+        this.expression = expression;
+        try {
+            this.tree = Ognl.parseExpression(expression);
+        } catch (OgnlException e) {
+            throw new SkillzException("Failed to parse '" + expression + "'", e);
+        }
+        this.path = PropertyPath.parse(expression);
+    }
+
+    /**
+     * The expression source.
+     * @return The expression.
+     */
+    String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Indicates whether the expression is a simple property path that doesn't need an OGNL context.
+     * @return true if the expression is evaluated as a chain of getters.
+     */
+    boolean isPropertyPath() {
+        return path != null;
+    }
+
+    /**
+     * Indicates whether the expression has been compiled to bytecode.
+     * @return true if a compiled accessor is available.
+     */
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Evaluates the expression.
+     * @param request The SpeechletRequest
+     * @param session The Session
+     * @param context The context map with the "request" and "session" values, or null to create one
+     *                if it is needed.
+     * @return The value of the expression.
+     */
+    Object getValue(SpeechletRequest request, Session session, @Nullable Map<String, Object> context) {
+        if (path != null) {
+            Object value = path.getValue(request, session);
+            if (value != PropertyPath.UNRESOLVED) {
+                return value;
+            }
+        }
+        return getValue(context != null ? context : createContext(request, session));
+    }
+
+    /**
+     * Evaluates the expression with OGNL.
+     * @param context The context map with the "request" and "session" values.
+     * @return The value of the expression.
+     */
+    Object getValue(Map<String, Object> context) {
+        Compiled current = compiled;
+        if (current == null && attempts < MAX_COMPILE_ATTEMPTS) {
+            current = compile(context);
+        }
+        if (current != null && current.requestType == requestType(context)) {
+            try {
+                return current.accessor.get(ognlContext(context), context);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Compiled accessor failed for '" + expression + "', interpreting.", e);
+            } finally {
+                CONTEXTS.get().clear();
+            }
+        }
+        try {
+            return Ognl.getValue(tree, context);
+        } catch (OgnlException e) {
+            throw new SkillzException("Failed to evaluate " + expression + " with context " + context, e);
+        }
+    }
+
+    /**
+     * Loads the values into this thread's reusable OgnlContext rather than allocating one per evaluation.
+     * @param context The context map with the "request" and "session" values.
+     * @return The thread's OgnlContext, rooted at the context map.
+     */
+    private static OgnlContext ognlContext(Map<String, Object> context) {
+        OgnlContext ognl = CONTEXTS.get();
+        ognl.setValues(context);
+        ognl.setRoot(context);
+        return ognl;
+    }
+
+    private synchronized Compiled compile(Map<String, Object> context) {
+        if (compiled != null || attempts >= MAX_COMPILE_ATTEMPTS) {
+            return compiled;
+        }
+        attempts++;
+        try {
+            Node node = Ognl.compileExpression((OgnlContext) Ognl.createDefaultContext(context), context, expression);
+            ExpressionAccessor accessor = node.getAccessor();
+            if (accessor != null && agrees(accessor, context)) {
+                compiled = new Compiled(accessor, requestType(context));
+            }
+        } catch (Exception | LinkageError e) {
+            LOGGER.log(attempts >= MAX_COMPILE_ATTEMPTS ? Level.WARNING : Level.FINE,
+                    "Unable to compile '" + expression + "', it will be interpreted.", e);
+        }
+        return compiled;
+    }
+
+    /**
+     * Checks a compiled accessor against the interpreter. OGNL's compiler doesn't report every
+     * error the interpreter does, for example a missing property, so an accessor that disagrees
+     * is thrown away and the expression is always interpreted.
+     */
+    private boolean agrees(ExpressionAccessor accessor, Map<String, Object> context) {
+        Object expected;
+        try {
+            expected = Ognl.getValue(tree, context);
+        } catch (OgnlException e) {
+            attempts = MAX_COMPILE_ATTEMPTS;
+            return false;
+        }
+        if (!Objects.equals(expected, accessor.get((OgnlContext) Ognl.createDefaultContext(context), context))) {
+            LOGGER.fine("Compiled accessor for '" + expression + "' disagrees with the interpreter, it will be interpreted.");
+            attempts = MAX_COMPILE_ATTEMPTS;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the context map expressions are evaluated against.
+     * @param request The SpeechletRequest
+     * @param session The Session
+     * @return A new map with the "request" and "session" values.
+     */
+    static Map<String, Object> createContext(SpeechletRequest request, Session session) {
+        Map<String, Object> context = new HashMap<>(4);
+        context.put(SESSION, session);
+        context.put(REQUEST, request);
+        return context;
+    }
+
+    private static Class<?> requestType(Map<String, Object> context) {
+        Object request = context.get(REQUEST);
+        return request == null ? null : request.getClass();
+    }
+
+    /**
+     * A compiled accessor and the request type it was compiled against.
+     */
+    private static class Compiled {
+        final ExpressionAccessor accessor;
+        final Class<?> requestType;
+
+        private Compiled(ExpressionAccessor accessor, Class<?> requestType) {
+            this.accessor = accessor;
+            this.requestType = requestType;
+        }
+    }
+}
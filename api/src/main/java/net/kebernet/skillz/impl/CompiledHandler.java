@@ -0,0 +1,317 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import net.kebernet.invoker.runtime.Invoker;
+import net.kebernet.invoker.runtime.ParameterValue;
+import net.kebernet.invoker.runtime.impl.InvokableMethod;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A handler for a single event or intent on a Skill, prepared at registration time so
+ * that it is ready to be invoked by the {@link DynamicSpeechlet}.
+ * <p>
+ * In {@link InvocationMode#METHOD_HANDLE} mode, a public method on a public skill class with up
+ * to {@link #MAX_BOUND_ARITY} parameters and a return value is bound with the
+ * {@link LambdaMetafactory}, so each method gets its own generated class that calls it directly.
+ * Other methods, such as void or non-public ones, are called through a spread MethodHandle.
+ * </p>
+ */
+public class CompiledHandler {
+    private static final Logger LOGGER = Logger.getLogger(CompiledHandler.class.getCanonicalName());
+    /**
+     * The erased shape every handle is adapted to: (target, arguments[]) -&gt; result.
+     */
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    /**
+     * The most parameters a method can have and still be bound with the LambdaMetafactory.
+     */
+    static final int MAX_BOUND_ARITY = 5;
+    private static final String CALL = "call";
+    /**
+     * The intent/event name this handler is bound to.
+     */
+    private final String name;
+    /**
+     * The introspected method from the Invoker.
+     */
+    private final InvokableMethod method;
+    /**
+     * A human readable description of the native method, for logging.
+     */
+    private final String description;
+    /**
+     * The compiled parameter binders for the method.
+     */
+    private final MethodBinder binder;
+    /**
+     * The Invoker used when there is no MethodHandle for the method.
+     */
+    private final Invoker invoker;
+    /**
+     * Calls the method with the positional arguments, or null if the method is called through the Invoker.
+     */
+    @Nullable
+    private final Call call;
+    /**
+     * Whether the call was bound with the LambdaMetafactory rather than a spread MethodHandle.
+     */
+    private final boolean bound;
+
+    CompiledHandler(@Nonnull InvokableMethod method, @Nonnull Registry registry) {
+        this.name = method.getName();
+        this.method = method;
+        this.invoker = registry.getInvoker();
+        this.binder = MethodBinder.compile(method, registry.getExpressions());
+        Method nativeMethod = method.getNativeMethod();
+        this.description = nativeMethod.getDeclaringClass().getCanonicalName() + "." + nativeMethod.getName();
+        Call bound = null;
+        Call call = null;
+        if (registry.getInvocationMode() == InvocationMode.METHOD_HANDLE) {
+            bound = bind(nativeMethod, description);
+            call = bound != null ? bound : spread(nativeMethod, description);
+        }
+        this.call = call;
+        this.bound = bound != null;
+    }
+
+    /**
+     * Binds the method to a generated implementation of the Call interface for its arity.
+     * @param nativeMethod The method.
+     * @param description The description of the method for logging.
+     * @return The Call, or null if the method can't be bound.
+     */
+    @Nullable
+    private static Call bind(Method nativeMethod, String description) {
+        int arity = nativeMethod.getParameterCount();
+        Class<?> type = nativeMethod.getDeclaringClass();
+        if (arity > MAX_BOUND_ARITY || nativeMethod.getReturnType() == void.class ||
+                Modifier.isStatic(nativeMethod.getModifiers()) || !Modifier.isPublic(nativeMethod.getModifiers()) ||
+                !isPublic(type) || !isVisible(type)) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(nativeMethod);
+            switch (arity) {
+                case 0: {
+                    Call0 c = bind(lookup, Call0.class, handle);
+                    return (t, a) -> c.call(t);
+                }
+                case 1: {
+                    Call1 c = bind(lookup, Call1.class, handle);
+                    return (t, a) -> c.call(t, a[0]);
+                }
+                case 2: {
+                    Call2 c = bind(lookup, Call2.class, handle);
+                    return (t, a) -> c.call(t, a[0], a[1]);
+                }
+                case 3: {
+                    Call3 c = bind(lookup, Call3.class, handle);
+                    return (t, a) -> c.call(t, a[0], a[1], a[2]);
+                }
+                case 4: {
+                    Call4 c = bind(lookup, Call4.class, handle);
+                    return (t, a) -> c.call(t, a[0], a[1], a[2], a[3]);
+                }
+                default: {
+                    Call5 c = bind(lookup, Call5.class, handle);
+                    return (t, a) -> c.call(t, a[0], a[1], a[2], a[3], a[4]);
+                }
+            }
+        } catch (Throwable e) {
+            LOGGER.log(Level.FINE, "Unable to bind " + description + ", using a MethodHandle.", e);
+            return null;
+        }
+    }
+
+    private static <T> T bind(MethodHandles.Lookup lookup, Class<T> callType, MethodHandle handle) throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(lookup, CALL, MethodType.methodType(callType),
+                MethodType.genericMethodType(handle.type().parameterCount()), handle, handle.type().wrap());
+        return callType.cast(site.getTarget().invoke());
+    }
+
+    /**
+     * Checks the class and any classes it is nested in are public, so the generated class can call it.
+     */
+    private static boolean isPublic(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the class can be loaded from here, as the generated class is defined alongside this one.
+     */
+    private static boolean isVisible(Class<?> type) {
+        try {
+            return Class.forName(type.getName(), false, CompiledHandler.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Calls the method through a spread MethodHandle.
+     * @param nativeMethod The method.
+     * @param description The description of the method for logging.
+     * @return The Call, or null if no handle could be created.
+     */
+    @Nullable
+    private static Call spread(Method nativeMethod, String description) {
+        MethodHandle handle = createHandle(nativeMethod, description);
+        return handle == null ? null : (t, a) -> (Object) handle.invokeExact(t, a);
+    }
+
+    /**
+     * Creates a MethodHandle for the method that takes the target and an array of positional arguments.
+     * @param nativeMethod The method.
+     * @param description The description of the method for logging.
+     * @return The handle, or null if one couldn't be created.
+     */
+    @Nullable
+    private static MethodHandle createHandle(Method nativeMethod, String description) {
+        try {
+            if (!nativeMethod.isAccessible()) {
+                nativeMethod.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflect(nativeMethod)
+                    .asSpreader(Object[].class, nativeMethod.getParameterCount())
+                    .asType(SPREAD_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Unable to create a MethodHandle for " + description +
+                    ", falling back to the Invoker.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Invokes the method with values that have already been bound.
+     * @param target The skill instance.
+     * @param arguments The positional arguments, required with the MethodHandle.
+     * @param values The named parameter values, required with the Invoker.
+     * @return The value returned by the method.
+     * @throws Throwable Any exception thrown by the method.
+     */
+    Object invoke(Object target, @Nullable Object[] arguments, @Nullable List<ParameterValue> values) throws Throwable {
+        if (call != null) {
+            return call.call(target, arguments);
+        }
+        return invoker.invoke(target, method, values);
+    }
+
+    /**
+     * Indicates whether this handler calls the method directly, with positional arguments.
+     * @return true if a generated call or MethodHandle is used, false if the Invoker is.
+     */
+    public boolean isMethodHandle() {
+        return call != null;
+    }
+
+    /**
+     * Indicates whether the method was bound with the LambdaMetafactory.
+     * @return true if a generated class calls the method.
+     */
+    @VisibleForTesting
+    boolean isBound() {
+        return bound;
+    }
+
+    /**
+     * The intent/event name this handler is bound to.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The introspected method to invoke.
+     * @return The InvokableMethod
+     */
+    public InvokableMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * The underlying java method.
+     * @return The native method.
+     */
+    public Method getNativeMethod() {
+        return method.getNativeMethod();
+    }
+
+    /**
+     * The compiled parameter binders for the method.
+     * @return The MethodBinder.
+     */
+    MethodBinder getBinder() {
+        return binder;
+    }
+
+    @Override
+    public String toString() {
+        return description + " (" + name + ")";
+    }
+
+    /**
+     * Calls a method on a target with positional arguments.
+     */
+    @FunctionalInterface
+    private interface Call {
+        Object call(Object target, Object[] arguments) throws Throwable;
+    }
+
+    private interface Call0 {
+        Object call(Object target) throws Throwable;
+    }
+
+    private interface Call1 {
+        Object call(Object target, Object a0) throws Throwable;
+    }
+
+    private interface Call2 {
+        Object call(Object target, Object a0, Object a1) throws Throwable;
+    }
+
+    private interface Call3 {
+        Object call(Object target, Object a0, Object a1, Object a2) throws Throwable;
+    }
+
+    private interface Call4 {
+        Object call(Object target, Object a0, Object a1, Object a2, Object a3) throws Throwable;
+    }
+
+    private interface Call5 {
+        Object call(Object target, Object a0, Object a1, Object a2, Object a3, Object a4) throws Throwable;
+    }
+}
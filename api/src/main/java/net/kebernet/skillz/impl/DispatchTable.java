@@ -0,0 +1,114 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimap;
+import net.kebernet.invoker.runtime.impl.IntrospectionData;
+import net.kebernet.invoker.runtime.impl.InvokableMethod;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, precompiled table of the handlers for a single Skill path. This is built
+ * once by the {@link Registry} and maps intent names, as well as the <code>Launched</code>,
+ * <code>SessionStarted</code> and <code>SessionEnded</code> events, to their {@link CompiledHandler}s.
+ * Looking up the handlers for a request is a single map lookup with no allocation.
+ */
+public class DispatchTable {
+    private final String path;
+    private final IntrospectionData data;
+    private final ImmutableListMultimap<String, CompiledHandler> handlers;
+
+    /**
+     * Builds a table from all the methods in the introspection data.
+     * @param path The path the skill is mapped to.
+     * @param data The introspection data for the skill type.
+     * @param registry The Registry the data came from.
+     */
+    DispatchTable(@Nonnull String path, @Nonnull IntrospectionData data, @Nonnull Registry registry) {
+        this.path = path;
+        this.data = data;
+        ImmutableListMultimap.Builder<String, CompiledHandler> builder = ImmutableListMultimap.builder();
+        for (InvokableMethod method : data.getMethods()) {
+            builder.put(method.getName(), new CompiledHandler(method, registry));
+        }
+        this.handlers = builder.build();
+    }
+
+    /**
+     * Builds a table from an explicit set of methods.
+     * @param path The path the skill is mapped to.
+     * @param data The introspection data for the skill type.
+     * @param registry The Registry the data came from.
+     * @param methods The methods grouped by intent/event name.
+     */
+    DispatchTable(@Nonnull String path, @Nonnull IntrospectionData data, @Nonnull Registry registry,
+                  @Nonnull Multimap<String, InvokableMethod> methods) {
+        this.path = path;
+        this.data = data;
+        ImmutableListMultimap.Builder<String, CompiledHandler> builder = ImmutableListMultimap.builder();
+        for (Map.Entry<String, InvokableMethod> entry : methods.entries()) {
+            builder.put(entry.getKey(), new CompiledHandler(entry.getValue(), registry));
+        }
+        this.handlers = builder.build();
+    }
+
+    /**
+     * Returns the handlers for a given intent or event name.
+     * @param name The intent or event name.
+     * @return The handlers, or an empty list if there are none.
+     */
+    @Nonnull
+    public List<CompiledHandler> getHandlers(String name) {
+        return handlers.get(name);
+    }
+
+    /**
+     * All the intent and event names this table can dispatch.
+     * @return A set of names.
+     */
+    public Set<String> getNames() {
+        return handlers.keySet();
+    }
+
+    /**
+     * The path the skill is mapped to.
+     * @return The path, starting with "/"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * The introspected data for the skill.
+     * @return The IntrospectionData.
+     */
+    public IntrospectionData getData() {
+        return data;
+    }
+
+    /**
+     * The Skill implementation type.
+     * @return The class annotated with Skill.
+     */
+    public Class<?> getType() {
+        return data.getType();
+    }
+}
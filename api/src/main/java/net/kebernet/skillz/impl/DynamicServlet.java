@@ -15,8 +15,15 @@
  */
 package net.kebernet.skillz.impl;
 
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
 import com.amazon.speech.speechlet.servlet.SpeechletServlet;
 import com.google.common.base.Strings;
+import net.kebernet.skillz.SkillzMetrics;
+import net.kebernet.skillz.format.ResponseTemplate;
 import net.kebernet.skillz.util.OutputIntents;
 import net.kebernet.skillz.util.OutputUtterances;
 
@@ -24,11 +31,18 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Signature;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
- * A subclass of Speechlet Servlet that delegates to the DynamicSpeechlet.
+ * A subclass of Speechlet Servlet that delegates to the DynamicSpeechlet. The speechlet is
+ * fixed when the servlet is created, so a single instance can serve concurrent requests
+ * for its skill.
  */
 public class DynamicServlet extends SpeechletServlet {
     private static final String UTTERANCES = "utterances";
@@ -37,13 +51,222 @@ public class DynamicServlet extends SpeechletServlet {
     private static final String UTF_8 = "utf-8";
     private static final String INTENTS = "intents";
     private static final Logger LOGGER = Logger.getLogger(SpeechletServlet.class.getCanonicalName());
+    /**
+     * The System.nanoTime() the current thread's request arrived at, or 0.
+     */
+    private static final ThreadLocal<long[]> REQUEST_START = ThreadLocal.withInitial(() -> new long[1]);
+    private final transient DynamicSpeechlet speechlet;
+    private final transient RequestPipeline pipeline;
+    private volatile SignatureVerifier signatureVerifier = SignatureVerifier.shared();
+    private final boolean disableRequestSignatureCheck =
+            Boolean.parseBoolean(System.getProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY));
+
+    /**
+     * Creates a servlet for a single skill.
+     * @param speechlet The speechlet for the skill.
+     */
+    public DynamicServlet(DynamicSpeechlet speechlet) {
+        this.speechlet = speechlet;
+        this.pipeline = new RequestPipeline(speechlet);
+        setSpeechlet(speechlet);
+    }
+
+    /**
+     * The speechlet this servlet delegates to.
+     * @return The DynamicSpeechlet.
+     */
+    public DynamicSpeechlet getDynamicSpeechlet() {
+        return speechlet;
+    }
+
+    /**
+     * Sets the verifier for request signatures.
+     * @param signatureVerifier The SignatureVerifier to use, {@link SignatureVerifier#shared()} by default.
+     */
+    public void setSignatureVerifier(SignatureVerifier signatureVerifier) {
+        this.signatureVerifier = checkNotNull(signatureVerifier);
+    }
 
     @Override
     protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        long[] start = REQUEST_START.get();
+        start[0] = System.nanoTime();
         try {
             super.service(req, resp);
         } catch(Exception e){
+            speechlet.getMetrics().count(speechlet.getDispatchTable().getPath(), null, SkillzMetrics.Event.ERROR);
             LOGGER.log(Level.WARNING, "Unexpected exception in servlet", e);
+        } finally {
+            start[0] = 0;
+        }
+    }
+
+    /**
+     * Returns the time the current thread's request arrived at, and clears it so it is only
+     * reported once.
+     * @return The System.nanoTime() of the request, or 0 if there isn't one.
+     */
+    static long consumeRequestStart() {
+        long[] start = REQUEST_START.get();
+        long value = start[0];
+        start[0] = 0;
+        return value;
+    }
+
+    /**
+     * Handles a request the same way the SDK servlet does, except for how the body is read and
+     * how the response is written.
+     * <p>
+     * The body is parsed as it streams in, and the signature is computed over the same bytes.
+     * Bodies over {@link RequestBody#MAX_SIZE} are rejected. When the Content-Length is too large,
+     * they are rejected before anything is read.
+     * <p>
+     * This class writes the response envelope. A response prepared with {@link ResponseTemplate}
+     * is written from its serialized bytes with the session attributes spliced in. Any other
+     * response is serialized once, rather than once for the size check and again for the body.
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        SpeechletResponseEnvelope envelope;
+        try {
+            envelope = pipeline.dispatch(readRequest(req));
+        } catch (Exception e) {
+            sendError(resp, e);
+            return;
+        }
+        ResponseTemplate template = ResponseTemplate.lookup(envelope.getResponse());
+        if (template != null) {
+            byte[] attributes = template.serializeAttributes(envelope.getSessionAttributes());
+            int length = template.length(attributes);
+            if (length > RequestPipeline.MAX_RESPONSE_SIZE) {
+                sendError(resp, tooLarge(length));
+                return;
+            }
+            startResponse(resp, length);
+            try (OutputStream out = resp.getOutputStream()) {
+                template.writeTo(out, attributes);
+            }
+        } else {
+            byte[] json = envelope.toJsonBytes();
+            if (json.length > RequestPipeline.MAX_RESPONSE_SIZE) {
+                sendError(resp, tooLarge(json.length));
+                return;
+            }
+            startResponse(resp, json.length);
+            try (OutputStream out = resp.getOutputStream()) {
+                out.write(json);
+            }
+        }
+    }
+
+    /**
+     * Reads and parses the request body, checking its size and signature.
+     * @param req The request.
+     * @return The parsed envelope.
+     * @throws IOException If the body is too large or can't be read or parsed.
+     * @throws SecurityException If the signature doesn't match.
+     */
+    protected SpeechletRequestEnvelope<?> readRequest(HttpServletRequest req) throws IOException {
+        if (req.getContentLength() > RequestBody.MAX_SIZE) {
+            throw new RequestBody.TooLargeException(RequestBody.MAX_SIZE);
+        }
+        String signatureHeader = req.getHeader(Sdk.SIGNATURE_REQUEST_HEADER);
+        Signature signature = null;
+        if (disableRequestSignatureCheck) {
+            LOGGER.warning("Speechlet request signature verification has been disabled!");
+        } else {
+            signature = signatureVerifier.start(signatureHeader,
+                    req.getHeader(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER));
+        }
+        SpeechletRequestEnvelope<?> request;
+        RequestBody body = RequestBody.open(req.getInputStream(), RequestBody.MAX_SIZE, signature);
+        try {
+            request = pipeline.parse(body);
+            body.drain();
+        } finally {
+            body.release();
+        }
+        if (signature != null) {
+            signatureVerifier.finish(signature, signatureHeader);
+        }
+        return request;
+    }
+
+    /**
+     * Verifies a request and dispatches it to the speechlet without waiting for a handler that
+     * returns a CompletionStage.
+     * @param request The envelope from {@link #readRequest(HttpServletRequest)}.
+     * @return A stage that completes with the verified response envelope.
+     * @throws IOException If the speechlet fails to handle the request.
+     * @throws SpeechletRequestHandlerException If the request fails verification.
+     * @throws SpeechletException If the speechlet fails.
+     */
+    protected CompletionStage<SpeechletResponseEnvelope> dispatchAsync(SpeechletRequestEnvelope<?> request)
+            throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        return pipeline.dispatchAsync(request);
+    }
+
+    /**
+     * Serializes a response envelope, from its template if it has one.
+     * @param envelope The response envelope.
+     * @return The JSON body.
+     * @throws IOException If the envelope can't be serialized.
+     * @throws SpeechletRequestHandlerException If the body is too large for the Alexa service.
+     */
+    protected byte[] toBytes(SpeechletResponseEnvelope envelope) throws IOException, SpeechletRequestHandlerException {
+        ResponseTemplate template = ResponseTemplate.lookup(envelope.getResponse());
+        byte[] json = template == null ?
+                envelope.toJsonBytes() :
+                template.toBytes(template.serializeAttributes(envelope.getSessionAttributes()));
+        if (json.length > RequestPipeline.MAX_RESPONSE_SIZE) {
+            throw tooLarge(json.length);
+        }
+        return json;
+    }
+
+    /**
+     * Sets the status and headers for a JSON response.
+     * @param resp The response.
+     * @param length The length of the body.
+     */
+    protected static void startResponse(HttpServletResponse resp, int length) {
+        resp.setContentType(APPLICATION_JSON);
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentLength(length);
+    }
+
+    private static SpeechletRequestHandlerException tooLarge(int length) {
+        return new SpeechletRequestHandlerException("Speechlet response with size of " + length +
+                " bytes exceeds the maximum allowed size of " + RequestPipeline.MAX_RESPONSE_SIZE + " bytes");
+    }
+
+    /**
+     * Sends the error status for a failed request, as the SDK servlet would, and records it.
+     * Failures thrown by the speechlet's handlers are not counted here, because the
+     * DynamicSpeechlet has already counted them against their intent. If the error can't be
+     * sent, that is logged.
+     * @param resp The response.
+     * @param e What failed.
+     */
+    protected void sendError(HttpServletResponse resp, Throwable e) {
+        int status;
+        if (e instanceof RequestBody.TooLargeException) {
+            status = HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+        } else if (e instanceof SpeechletRequestHandlerException || e instanceof SecurityException) {
+            status = HttpServletResponse.SC_BAD_REQUEST;
+        } else {
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+        boolean fromSpeechlet = e instanceof SpeechletException ||
+                (e instanceof RuntimeException && !(e instanceof SecurityException));
+        if (!fromSpeechlet) {
+            speechlet.getMetrics().count(speechlet.getDispatchTable().getPath(), null, SkillzMetrics.Event.ERROR);
+        }
+        LOGGER.log(Level.SEVERE, "Exception occurred in doPost, returning status code " + status, e);
+        try {
+            resp.sendError(status, e.getMessage());
+        } catch (IOException | IllegalStateException sendFailure) {
+            LOGGER.log(Level.WARNING, "Unable to send error status " + status, sendFailure);
         }
     }
 
@@ -56,7 +279,6 @@ public class DynamicServlet extends SpeechletServlet {
         }
         switch(q) {
             case UTTERANCES: {
-                DynamicSpeechlet speechlet = (DynamicSpeechlet) getSpeechlet();
                 OutputUtterances output = new OutputUtterances(speechlet.getData());
                 resp.setContentType(TEXT_PLAIN);
                 resp.setCharacterEncoding(UTF_8);
@@ -65,7 +287,6 @@ public class DynamicServlet extends SpeechletServlet {
                 break;
             }
             case INTENTS: {
-                DynamicSpeechlet speechlet = (DynamicSpeechlet) getSpeechlet();
                 OutputIntents output = new OutputIntents(speechlet.getData());
                 resp.setContentType(APPLICATION_JSON);
                 resp.setCharacterEncoding(UTF_8);
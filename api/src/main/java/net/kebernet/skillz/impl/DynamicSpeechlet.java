@@ -24,83 +24,155 @@ import com.amazon.speech.speechlet.Speechlet;
 import com.amazon.speech.speechlet.SpeechletException;
 import com.amazon.speech.speechlet.SpeechletRequest;
 import com.amazon.speech.speechlet.SpeechletResponse;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
-import net.kebernet.invoker.runtime.InvokerException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import net.kebernet.invoker.runtime.ParameterValue;
 import net.kebernet.invoker.runtime.impl.IntrospectionData;
 import net.kebernet.invoker.runtime.impl.InvokableMethod;
+import net.kebernet.skillz.Formatter;
 import net.kebernet.skillz.FormatterMappings;
+import net.kebernet.skillz.MetricsContext;
 import net.kebernet.skillz.SkillzException;
+import net.kebernet.skillz.SkillzMetrics;
 import net.kebernet.skillz.TypeFactory;
-import net.kebernet.skillz.annotation.ExpressionValue;
+import net.kebernet.skillz.annotation.Deadline;
 import net.kebernet.skillz.annotation.Launched;
 import net.kebernet.skillz.annotation.ResponseFormatter;
 import net.kebernet.skillz.annotation.SessionEnded;
 import net.kebernet.skillz.annotation.SessionStarted;
 import net.kebernet.skillz.annotation.Skill;
-import net.kebernet.skillz.annotation.Slot;
-import net.kebernet.skillz.util.Coercion;
-import ognl.Ognl;
-import ognl.OgnlException;
+import net.kebernet.skillz.util.Diagnostics;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * This is a Speechlet subclass that will delegate to a Skill annotated pojo.
+ * <p>
+ * A response handler may return a {@link CompletionStage}. Its value is formatted when the
+ * stage completes. The Speechlet methods wait for it, while {@link #onLaunchAsync} and
+ * {@link #onIntentAsync} hand back the formatted stage so the caller doesn't have to.
+ * Handlers are invoked on the request thread, or on virtual threads when they are enabled.
  */
 public class DynamicSpeechlet implements Speechlet {
     private static final Logger LOGGER = Logger.getLogger(DynamicSpeechlet.class.getCanonicalName());
-    private static final Coercion COERCION = new Coercion();
-    /**
-     * A cache for pre-compiled OGNL expressions
-     */
-    private static final Cache<String, Object> OGNL_EXPRESSIONS = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .build();
+    private static final Diagnostics DIAGNOSTICS = Diagnostics.forClass(DynamicSpeechlet.class);
     /**
-     * All the invokable methods for this instance grouped by invocation/intent name
+     * The events handled by {@link #handleVoidEvent}, which never use a deadline.
      */
-    private final ArrayListMultimap<String, InvokableMethod> methods;
+    private static final ImmutableSet<String> VOID_EVENTS = ImmutableSet.of(
+            SessionStarted.class.getSimpleName(), SessionEnded.class.getSimpleName());
     /**
-     * The introspected data for the wrapped type
+     * The precompiled handlers for the wrapped type grouped by invocation/intent name
      */
-    private final IntrospectionData data;
+    private final DispatchTable table;
     /**
      * The Registry from the runtime.
      */
     private final Registry registry;
     /**
-     * The target implementation object.
+     * Supplies the skill instances to invoke events on.
      */
-    private final Object implementation;
+    private final InstanceProvider instances;
+    /**
+     * The declared formatter for each handler that has one.
+     */
+    private final ImmutableMap<CompiledHandler, InstanceProvider> formatters;
     /**
      * Formatter mappings to possibly encode the response with.
      */
     private final FormatterMappings responseMapper;
     /**
-     * The TypeFactory for creating object instances.
+     * Runs the response handler invocations.
+     */
+    private final HandlerExecutor executor;
+    /**
+     * The deadline for each handler that has one.
      */
-    private final TypeFactory typeFactory;
+    private final ImmutableMap<CompiledHandler, HandlerDeadline> deadlines;
+    /**
+     * The metrics to record to.
+     */
+    private volatile SkillzMetrics metrics = SkillzMetrics.NONE;
+
+    /**
+     * Creates a speechlet for a precompiled dispatch table. Instances of the skill type
+     * are created from the TypeFactory and reused according to the scope declared on
+     * the {@link Skill}. A single instance of this class can be shared by all requests
+     * for the skill.
+     *
+     * @param table The DispatchTable from the Registry
+     * @param responseMapper Formatter mappings to encode the response with.
+     * @param registry The Registry from the runtime.
+     * @param typeFactory The TypeFactory for creating object instances.
+     */
+    public DynamicSpeechlet(DispatchTable table, FormatterMappings responseMapper, Registry registry, TypeFactory typeFactory) {
+        this(table, responseMapper, registry, InstanceProvider.forSkill(table.getType(), typeFactory), typeFactory);
+    }
 
+    /**
+     * Creates a speechlet bound to a single skill instance.
+     *
+     * @param methods The invokable methods grouped by invocation/intent name
+     * @param data The introspected data for the wrapped type
+     * @param responseMapper Formatter mappings to encode the response with.
+     * @param registry The Registry from the runtime.
+     * @param implementation The target implementation object.
+     * @param typeFactory The TypeFactory for creating object instances.
+     */
     public DynamicSpeechlet(ArrayListMultimap<String, InvokableMethod> methods, IntrospectionData data, FormatterMappings responseMapper, Registry registry, Object implementation, TypeFactory typeFactory) {
-        this.methods = methods;
-        this.data = data;
+        this(new DispatchTable(((Skill) data.getType().getAnnotation(Skill.class)).path(), data,
+                        registry, methods),
+                responseMapper, registry, InstanceProvider.of(implementation), typeFactory);
+    }
+
+    private DynamicSpeechlet(DispatchTable table, FormatterMappings responseMapper, Registry registry, InstanceProvider instances, TypeFactory typeFactory) {
+        this.table = table;
         this.registry = registry;
-        this.implementation = implementation;
+        this.instances = instances;
         this.responseMapper = responseMapper;
-        this.typeFactory = typeFactory;
+        this.executor = HandlerExecutor.forSkill(table.getType());
+        ImmutableMap.Builder<CompiledHandler, InstanceProvider> formatters = ImmutableMap.builder();
+        ImmutableMap.Builder<CompiledHandler, HandlerDeadline> deadlines = ImmutableMap.builder();
+        Map<Class<?>, Object> fallbacks = new HashMap<>();
+        Deadline skillDeadline = table.getType().getAnnotation(Deadline.class);
+        for (String name : table.getNames()) {
+            for (CompiledHandler handler : table.getHandlers(name)) {
+                ResponseFormatter declared = handler.getNativeMethod().getAnnotation(ResponseFormatter.class);
+                if (declared != null) {
+                    formatters.put(handler, InstanceProvider.forFormatter(declared, typeFactory));
+                }
+                Deadline deadline = handler.getNativeMethod().getAnnotation(Deadline.class);
+                if (VOID_EVENTS.contains(name)) {
+                    checkArgument(deadline == null, "%s handles a session event, which can't have a deadline", handler);
+                    continue;
+                }
+                if (deadline == null) {
+                    deadline = skillDeadline;
+                }
+                if (deadline != null) {
+                    checkArgument(deadline.value() > 0, "The deadline for %s must be positive", handler);
+                    deadlines.put(handler, new HandlerDeadline(deadline.value(),
+                            fallbacks.computeIfAbsent(deadline.fallback(), typeFactory::create)));
+                }
+            }
+        }
+        this.formatters = formatters.build();
+        this.deadlines = deadlines.build();
     }
 
     /**
@@ -109,7 +181,32 @@ public class DynamicSpeechlet implements Speechlet {
      */
     @SuppressWarnings("WeakerAccess")
     public IntrospectionData getData() {
-        return data;
+        return table.getData();
+    }
+
+    /**
+     * The precompiled dispatch table for the wrapped type
+     * @return DispatchTable for this instance.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public DispatchTable getDispatchTable() {
+        return table;
+    }
+
+    /**
+     * The metrics this speechlet records to.
+     * @return The SkillzMetrics, NONE by default.
+     */
+    public SkillzMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics this speechlet records to.
+     * @param metrics The SkillzMetrics to use.
+     */
+    public void setMetrics(SkillzMetrics metrics) {
+        this.metrics = checkNotNull(metrics);
     }
 
     @Override
@@ -119,13 +216,34 @@ public class DynamicSpeechlet implements Speechlet {
 
     @Override
     public SpeechletResponse onLaunch(LaunchRequest request, Session session) throws SpeechletException {
-        return handleResponseEvent(Launched.class.getSimpleName(), request, session);
+        return join(handleResponseEvent(Launched.class.getSimpleName(), request, session));
     }
 
+    /**
+     * Handles a launch without waiting for a handler that returns a CompletionStage.
+     * @param request The request.
+     * @param session The session.
+     * @return A stage that completes with the formatted response.
+     * @throws SpeechletException If there is no handler for the launch.
+     */
+    public CompletionStage<SpeechletResponse> onLaunchAsync(LaunchRequest request, Session session) throws SpeechletException {
+        return stage(handleResponseEvent(Launched.class.getSimpleName(), request, session));
+    }
 
     @Override
     public SpeechletResponse onIntent(IntentRequest request, Session session) throws SpeechletException {
-        return handleResponseEvent(request.getIntent().getName(), request, session);
+        return join(handleResponseEvent(request.getIntent().getName(), request, session));
+    }
+
+    /**
+     * Handles an intent without waiting for a handler that returns a CompletionStage.
+     * @param request The request.
+     * @param session The session.
+     * @return A stage that completes with the formatted response.
+     * @throws SpeechletException If there is no handler for the intent.
+     */
+    public CompletionStage<SpeechletResponse> onIntentAsync(IntentRequest request, Session session) throws SpeechletException {
+        return stage(handleResponseEvent(request.getIntent().getName(), request, session));
     }
 
     @Override
@@ -140,60 +258,174 @@ public class DynamicSpeechlet implements Speechlet {
      * @param request The request.
      * @param session The session.
      * @param <T> The request type
-     * @return A SpeechletResponse to return
+     * @return A SpeechletResponse, or a CompletionStage of one if the handler returned a stage.
      * @throws SpeechletException Thrown when stuff goes bad. Real bad.
      */
-    private <T extends SpeechletRequest> SpeechletResponse handleResponseEvent(String name, T request, Session session) throws SpeechletException {
+    private <T extends SpeechletRequest> Object handleResponseEvent(String name, T request, Session session) throws SpeechletException {
+        SkillzMetrics metrics = this.metrics;
+        List<CompiledHandler> matches = table.getHandlers(name);
+        if (matches.isEmpty()) {
+            // The name comes from the request, so it is only recorded once it is known to be a handler.
+            recordParse(metrics, null);
+            metrics.count(table.getPath(), null, SkillzMetrics.Event.NO_HANDLER);
+            LOGGER.log(Level.SEVERE, "No handler available for '" + name + "' on path " + table.getPath());
+            throw new SpeechletException("No handler available for '" + name + "'");
+        }
+        recordParse(metrics, name);
+        DIAGNOSTICS.begin(request.getRequestId());
         try {
-            LOGGER.fine("Doing response event " + name);
-            List<InvokableMethod> matches = methods.get(name);
-            if (matches == null || matches.isEmpty()) {
-                LOGGER.log(Level.SEVERE, "No handler available for '" + name + "' on path " + ((Skill) data.getType().getAnnotation(Skill.class)).path());
-                throw new SpeechletException("No handler available for '" + name + "'");
-            }
+            DIAGNOSTICS.trace(name, n -> "Doing response event " + n);
+            Object response;
             if (matches.size() == 1) {
-                InvokableMethod method = matches.iterator().next();
-                LOGGER.fine("Found single match method " + method.getNativeMethod().toGenericString());
-                List<ParameterValue> values = synthesizeValues(data, method, request, session);
-                return invokeResponseEvent(method, values, request, session);
+                CompiledHandler handler = matches.get(0);
+                DIAGNOSTICS.trace(handler, h -> "Found single match method " + h.getNativeMethod().toGenericString());
+                response = execute(metrics, name, handler, null, request, session);
             } else {
+                long start = System.nanoTime();
                 MethodEvaluation evaluation = findMethodEvaluation(request, session, matches);
-                LOGGER.fine("Decided to call " + evaluation.method.getNativeMethod().toGenericString());
-                return invokeResponseEvent(evaluation.method, evaluation.values, request, session);
+                metrics.time(table.getPath(), name, SkillzMetrics.Stage.BIND, System.nanoTime() - start);
+                DIAGNOSTICS.trace(evaluation, e -> "Decided to call " + e.method.getNativeMethod().toGenericString());
+                response = execute(metrics, name, evaluation.handler, evaluation, request, session);
+            }
+            if (response instanceof CompletionStage) {
+                return ((CompletionStage<?>) response).whenComplete((r, e) -> {
+                    if (e != null) {
+                        metrics.count(table.getPath(), name, SkillzMetrics.Event.ERROR);
+                        LOGGER.log(Level.SEVERE, "Exception completing response event ", e);
+                    }
+                });
             }
+            return response;
         } catch(RuntimeException e){
+            metrics.count(table.getPath(), name, SkillzMetrics.Event.ERROR);
             LOGGER.log(Level.SEVERE, "Exception handling response event ", e);
             throw e;
+        } finally {
+            DIAGNOSTICS.end();
+        }
+    }
+
+    /**
+     * Invokes a method with the executor, and with its deadline if it has one.
+     * @param metrics The metrics to record to.
+     * @param name Name of the event.
+     * @param handler The handler to invoke
+     * @param evaluation The already bound values if the handler was chosen from several, or null.
+     * @return The SpeechletResponse, or a CompletionStage of one.
+     */
+    private Object execute(SkillzMetrics metrics, String name, CompiledHandler handler,
+                           @Nullable MethodEvaluation evaluation, SpeechletRequest request, Session session) {
+        Supplier<Object> invocation = DIAGNOSTICS.propagate(
+                () -> invokeResponseEvent(metrics, name, handler, evaluation, request, session));
+        HandlerDeadline deadline = deadlines.get(handler);
+        if (deadline == null) {
+            return executor.execute(invocation);
+        }
+        return executor.execute(invocation, deadline.millis,
+                () -> formatFallback(metrics, name, deadline.fallback, request, session),
+                () -> {
+                    metrics.count(table.getPath(), name, SkillzMetrics.Event.TIMEOUT);
+                    LOGGER.warning("Handler " + handler + " didn't respond within " + deadline.millis + "ms, returning the fallback");
+                });
+    }
+
+    /**
+     * Formats the fallback for a handler that missed its deadline.
+     */
+    @SuppressWarnings("unchecked")
+    private SpeechletResponse formatFallback(SkillzMetrics metrics, String name, Object fallback,
+                                             SpeechletRequest request, Session session) {
+        long start = System.nanoTime();
+        MetricsContext.enter(metrics, table.getPath(), name);
+        try {
+            return responseMapper.findMappingFunction(fallback.getClass()).apply(fallback, request, session);
+        } finally {
+            MetricsContext.exit();
+            metrics.time(table.getPath(), name, SkillzMetrics.Stage.FORMAT, System.nanoTime() - start);
         }
     }
 
     /**
      * Invokes a method and creates a speechlet response.
-     * @param method The method to invoke
-     * @param values The parameter values to use.
+     * @param metrics The metrics to record to.
+     * @param name Name of the event.
+     * @param handler The handler to invoke
+     * @param evaluation The already bound values if the handler was chosen from several, or null.
+     * @return The SpeechletResponse, or a CompletionStage that formats the method's stage when it completes.
+     */
+    private Object invokeResponseEvent(SkillzMetrics metrics, String name, @Nonnull CompiledHandler handler,
+                                       @Nullable MethodEvaluation evaluation, SpeechletRequest request, Session session) {
+        Object result = invoke(metrics, name, handler, evaluation, request, session);
+        DIAGNOSTICS.trace(result, r -> "Response object " + r);
+        if (result instanceof CompletionStage) {
+            DIAGNOSTICS.trace(() -> "That was a CompletionStage, formatting it on completion.");
+            return ((CompletionStage<?>) result).thenApply(
+                    DIAGNOSTICS.propagate(r -> format(metrics, name, handler, r, request, session)));
+        }
+        return format(metrics, name, handler, result, request, session);
+    }
+
+    /**
+     * Creates a speechlet response from the value a method returned.
+     * @param metrics The metrics to record to.
+     * @param name Name of the event.
+     * @param handler The handler that was invoked
+     * @param result The value it returned.
      */
     @SuppressWarnings("unchecked")
-    private SpeechletResponse invokeResponseEvent(@Nonnull InvokableMethod method, @Nonnull List<ParameterValue> values, SpeechletRequest request, Session session) {
+    private SpeechletResponse format(SkillzMetrics metrics, String name, CompiledHandler handler, Object result,
+                                     SpeechletRequest request, Session session) {
+        if (result != null && result instanceof SpeechletResponse) {
+            DIAGNOSTICS.trace(() -> "That was a speechlet response.");
+            return (SpeechletResponse) result;
+        }
+        long start = System.nanoTime();
+        MetricsContext.enter(metrics, table.getPath(), name);
         try {
-            ResponseFormatter declaredFormatter = method.getNativeMethod().getAnnotation(ResponseFormatter.class);
-            Object result = registry.getInvoker().invoke(implementation, method, values);
-            LOGGER.info("Response object "+result);
-            if (result != null && result instanceof SpeechletResponse) {
-                LOGGER.info("That was a speechlet response.");
-                return (SpeechletResponse) result;
-            } else if(declaredFormatter != null) {
-                LOGGER.info("Using declared formatter... "+declaredFormatter.value().getCanonicalName());
-                return typeFactory.create(declaredFormatter.value()).apply(result, request, session);
+            InstanceProvider declared = formatters.get(handler);
+            if (declared != null) {
+                Formatter formatter = (Formatter) declared.acquire();
+                try {
+                    DIAGNOSTICS.trace(formatter, f -> "Using declared formatter " + f.getClass().getCanonicalName());
+                    return formatter.apply(result, request, session);
+                } finally {
+                    declared.release(formatter);
+                }
             } else {
-                LOGGER.info("Looking for a mapping function for "+result.getClass());
+                DIAGNOSTICS.trace(result, r -> "Looking for a mapping function for " + r.getClass());
                 return responseMapper.findMappingFunction(result.getClass()).apply(result, request, session);
             }
-        } catch (InvokerException e) {
-            LOGGER.log(Level.SEVERE, "Exception invoking method: "+method.getNativeMethod().getName()+" ("+method.getName()+")", e);
-            throw new SkillzException("Unable to evaluate method : " + method, e);
+        } finally {
+            MetricsContext.exit();
+            metrics.time(table.getPath(), name, SkillzMetrics.Stage.FORMAT, System.nanoTime() - start);
         }
     }
 
+    /**
+     * Waits for a response that is still a CompletionStage.
+     */
+    @SuppressWarnings("unchecked")
+    private static SpeechletResponse join(Object response) {
+        if (!(response instanceof CompletionStage)) {
+            return (SpeechletResponse) response;
+        }
+        try {
+            return ((CompletionStage<SpeechletResponse>) response).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof SkillzException ? (SkillzException) e.getCause() :
+                    new SkillzException("Unable to complete response", e.getCause());
+        }
+    }
+
+    /**
+     * Wraps a response that is already complete in a stage.
+     */
+    @SuppressWarnings("unchecked")
+    static CompletionStage<SpeechletResponse> stage(Object response) {
+        return response instanceof CompletionStage ?
+                (CompletionStage<SpeechletResponse>) response :
+                CompletableFuture.completedFuture((SpeechletResponse) response);
+    }
 
     /**
      * Handle an event that doesn't require a response to the user.
@@ -204,109 +436,135 @@ public class DynamicSpeechlet implements Speechlet {
      * @param <T> The type of request
      */
     private <T extends SpeechletRequest> void handleVoidEvent(Class<? extends Annotation> annotation, T request, Session session) {
-        List<InvokableMethod> handlers = methods.get(annotation.getSimpleName());
-        if (handlers == null || handlers.isEmpty()) {
+        String name = annotation.getSimpleName();
+        SkillzMetrics metrics = this.metrics;
+        recordParse(metrics, name);
+        List<CompiledHandler> handlers = table.getHandlers(name);
+        if (handlers.isEmpty()) {
             return; // This is a void event and we have nothing to do here.
         }
-        if (handlers.size() == 1) {
-            InvokableMethod method = handlers.iterator().next();
-            List<ParameterValue> values = synthesizeValues(data, method, request, session);
-            invokeVoidEvent(method, values);
-        } else {
-            MethodEvaluation evaluation = findMethodEvaluation(request, session, handlers);
-            invokeVoidEvent(evaluation.method, evaluation.values);
+        DIAGNOSTICS.begin(request.getRequestId());
+        try {
+            DIAGNOSTICS.trace(name, n -> "Doing void event " + n);
+            if (handlers.size() == 1) {
+                invokeVoidEvent(metrics, name, handlers.get(0), null, request, session);
+            } else {
+                long start = System.nanoTime();
+                MethodEvaluation evaluation = findMethodEvaluation(request, session, handlers);
+                metrics.time(table.getPath(), name, SkillzMetrics.Stage.BIND, System.nanoTime() - start);
+                invokeVoidEvent(metrics, name, evaluation.handler, evaluation, request, session);
+            }
+        } catch (RuntimeException e) {
+            metrics.count(table.getPath(), name, SkillzMetrics.Event.ERROR);
+            throw e;
+        } finally {
+            DIAGNOSTICS.end();
         }
     }
 
-    /** Invoke the method where we don't care about the response. Will double check that the
-     * Invoker instance returns Void.class
+    /** Invoke the method where we don't care about the response. Will double check that
+     * nothing was returned.
      *
-     * @param method The method to invoke
-     * @param values The parameters to pass.
+     * @param metrics The metrics to record to.
+     * @param name Name of the event.
+     * @param handler The handler to invoke
+     * @param evaluation The already bound values if the handler was chosen from several, or null.
+     */
+    private void invokeVoidEvent(SkillzMetrics metrics, String name, CompiledHandler handler, @Nullable MethodEvaluation evaluation,
+                                 SpeechletRequest request, Session session) {
+        Object result = invoke(metrics, name, handler, evaluation, request, session);
+        if (result != null && result != Void.class) {
+            LOGGER.warning("Non-void return from " + handler.getName() + " method : " + handler);
+        }
+    }
+
+    /**
+     * Binds the parameters, if they aren't already bound, and invokes a handler on the skill
+     * instance, wrapping anything thrown in a SkillzException.
+     * @param metrics The metrics to record to.
+     * @param name Name of the event.
+     * @param handler The handler to invoke
+     * @param evaluation The already bound values if the handler was chosen from several, or null.
+     * @return The value returned by the method.
      */
-    private void invokeVoidEvent(InvokableMethod method, List<ParameterValue> values) {
+    private Object invoke(SkillzMetrics metrics, String name, CompiledHandler handler, @Nullable MethodEvaluation evaluation,
+                          SpeechletRequest request, Session session) {
+        Object[] arguments;
+        List<ParameterValue> values;
+        if (evaluation != null) {
+            arguments = evaluation.arguments;
+            values = evaluation.values;
+        } else {
+            long start = System.nanoTime();
+            if (handler.isMethodHandle()) {
+                arguments = handler.getBinder().bindArguments(request, session);
+                values = null;
+            } else {
+                arguments = null;
+                values = handler.getBinder().bind(request, session);
+            }
+            metrics.time(table.getPath(), name, SkillzMetrics.Stage.BIND, System.nanoTime() - start);
+        }
+        Object instance = instances.acquire();
+        long start = System.nanoTime();
+        Object result = null;
         try {
-            Object result = registry.getInvoker().invoke(implementation, method.getName(), values);
-            if (result != Void.class) {
-                LOGGER.warning("Non-void return from " + method.getName() + " method : " + method);
+            result = handler.invoke(instance, arguments, values);
+            if (result instanceof CompletionStage) {
+                // The instance may still be working on the stage, so it goes back when the stage completes.
+                return ((CompletionStage<?>) result).whenComplete((r, e) -> instances.release(instance));
+            }
+            return result;
+        } catch (SkillzException e) {
+            throw e;
+        } catch (Throwable e) {
+            LOGGER.log(Level.SEVERE, "Exception invoking method: "+handler, e);
+            throw new SkillzException("Unable to evaluate method : " + handler, e);
+        } finally {
+            metrics.time(table.getPath(), name, SkillzMetrics.Stage.INVOKE, System.nanoTime() - start);
+            if (!(result instanceof CompletionStage)) {
+                instances.release(instance);
             }
-        } catch (InvokerException e) {
-            throw new SkillzException("Unable to evaluate method : " + method, e);
         }
     }
 
-    private MethodEvaluation findMethodEvaluation(SpeechletRequest request, Session session, List<InvokableMethod> methods) {
-        return methods.stream()
-                .map(m -> {
-                    List<ParameterValue> possibleArguments = synthesizeValues(data, m, request, session);
+    /**
+     * Records the time from the servlet receiving the request to the speechlet being called,
+     * once per request.
+     */
+    private void recordParse(SkillzMetrics metrics, @Nullable String name) {
+        long start = DynamicServlet.consumeRequestStart();
+        if (start != 0) {
+            metrics.time(table.getPath(), name, SkillzMetrics.Stage.PARSE, System.nanoTime() - start);
+        }
+    }
+
+    private MethodEvaluation findMethodEvaluation(SpeechletRequest request, Session session, List<CompiledHandler> handlers) {
+        return handlers.stream()
+                .map(h -> {
+                    Object[] arguments = h.getBinder().newArguments();
+                    List<ParameterValue> possibleArguments = h.getBinder().bind(request, session, arguments);
+                    InvokableMethod m = h.getMethod();
                     int score = m.matchValue(m.getName(), possibleArguments);
-                    return new MethodEvaluation(m, possibleArguments, score);
+                    return new MethodEvaluation(h, arguments, possibleArguments, score);
                 }) // create a set of MethodEvaluations that could match the intent/op name
                 .filter(m-> m.score >= 0) // filter out the candidates that don't match
                 .sorted() // Sort them based on match quality
                 .findFirst() // Take the best match
-                .orElseThrow(() -> new SkillzException("Unable to find a match from methods: " + methods));
+                .orElseThrow(() -> new SkillzException("Unable to find a match from methods: " + handlers));
     }
 
     /**
-     * This method creates a synthesized list of ParameterValues to use as possible invocation arguments
-     * @param data Introspection data to use.
-     * @param method The method we might want to invoke
-     * @param request The SpeechletRequest to use.
-     * @param session The session to use.
-     * @param <T> The type of speechlet request.
-     * @return A List of parameter values evaluated from the request and session context.
+     * The deadline declared for a handler, and the fallback to format when it passes.
      */
-    @SuppressWarnings("WeakerAccess")
-    static <T extends SpeechletRequest> List<ParameterValue> synthesizeValues(IntrospectionData data, InvokableMethod method,
-                                                                              T request, Session session) {
-        // Create the ExpressionValue context.
-        Map<String, Object> context = new HashMap<>(2);
-        context.put("session", session);
-        context.put("request", request);
-
-        final ArrayList<ParameterValue> parameterValues = new ArrayList<>();
-        method.getParameters()
-        .stream()
-        .flatMap(param -> {
-            Slot slotAnnotation = param.getParameter().getAnnotation(Slot.class);
-            if (slotAnnotation != null) {
-                try {
-                    IntentRequest ir = (IntentRequest) request;
-                    com.amazon.speech.slu.Slot slot = ir.getIntent().getSlot(slotAnnotation.name());
-                    return slot == null ? Stream.empty() :
-                            Stream.of(new ParameterValue(param.getName(), COERCION.coerce(slot.getValue(), param.getType())));
-                } catch (ClassCastException e) {
-                    throw new SkillzException(data.getType().getCanonicalName() + "." + method.getNativeMethod().getName() + " cannot declare a slot unless " +
-                            "it is handling and IntentRequest.");
-                }
-            }
-            ExpressionValue requestValue = param.getParameter().getAnnotation(ExpressionValue.class);
-            if (requestValue != null) {
-                Object value = evaluate(context, requestValue.value());
-                return Stream.of(new ParameterValue(param.getName(), COERCION.coerce(value, param.getType())));
-            }
-            return Stream.empty();
-        })
-        .forEach(parameterValues::add);
-        return parameterValues;
-    }
+    private static final class HandlerDeadline {
+        final long millis;
+        final Object fallback;
 
-    private static Object evaluate(Map<String, Object> context, String expression) {
-        Object expr;
-        try {
-            expr = OGNL_EXPRESSIONS.get(expression, ()-> Ognl.parseExpression(expression) );
-        }  catch (ExecutionException e) {
-            throw new SkillzException("Failed to parse '" + expression + "'", e);
+        private HandlerDeadline(long millis, Object fallback) {
+            this.millis = millis;
+            this.fallback = fallback;
         }
-        Object value;
-        try {
-            value = Ognl.getValue(expr, context);
-        } catch (OgnlException e) {
-            throw new SkillzException("Failed to evaluate " + expr + " with context " + context, e);
-        }
-
-        return value;
     }
 
     /**
@@ -314,18 +572,23 @@ public class DynamicSpeechlet implements Speechlet {
      * should use to handle a particular response given a list of ParameterValues.
      */
     private static class MethodEvaluation implements Comparable {
+        final CompiledHandler handler;
         final InvokableMethod method;
+        final Object[] arguments;
         final List<ParameterValue> values;
         final int score;
 
         /**
          * Constructor.
-         * @param method
+         * @param handler
+         * @param arguments
          * @param values
          * @param score
          */
-        private MethodEvaluation(InvokableMethod method, List<ParameterValue> values, int score) {
-            this.method = method;
+        private MethodEvaluation(CompiledHandler handler, Object[] arguments, List<ParameterValue> values, int score) {
+            this.handler = handler;
+            this.method = handler.getMethod();
+            this.arguments = arguments;
             this.values = values;
             this.score = score;
         }
@@ -0,0 +1,66 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import net.kebernet.skillz.annotation.ExpressionValue;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The permanent table of every {@link ExpressionValue} expression used by the skills in a
+ * {@link Registry}. Each distinct expression is parsed once, when the skill types are
+ * registered, and shared by every parameter that uses it. Entries are never evicted.
+ */
+class ExpressionTable {
+    private final ConcurrentMap<String, CompiledExpression> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * Adds every expression declared on the parameters of a type's methods.
+     * @param type The skill type.
+     */
+    void register(Class<?> type) {
+        for (Method method : type.getMethods()) {
+            for (Parameter parameter : method.getParameters()) {
+                ExpressionValue value = parameter.getAnnotation(ExpressionValue.class);
+                if (value != null) {
+                    get(value.value());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the compiled form of an expression, adding it if it isn't in the table yet.
+     * @param expression The expression source.
+     * @return The CompiledExpression.
+     */
+    CompiledExpression get(String expression) {
+        CompiledExpression compiled = expressions.get(expression);
+        return compiled != null ? compiled : expressions.computeIfAbsent(expression, CompiledExpression::new);
+    }
+
+    /**
+     * All the expressions in the table.
+     * @return The CompiledExpressions.
+     */
+    Collection<CompiledExpression> getAll() {
+        return expressions.values();
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.kebernet.skillz.SkillzException;
+import net.kebernet.skillz.annotation.Skill;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the response handler invocations for a skill. By default they run on the calling
+ * thread. When {@link #VIRTUAL_THREADS_PROPERTY} is set and the JDK supports virtual threads,
+ * each invocation runs on a new virtual thread instead, and the caller gets a CompletionStage.
+ * The JDK is checked reflectively, so this class still runs on Java 8.
+ * <p>
+ * If the skill declares a {@link Skill#maxConcurrency()}, a semaphore limits the invocations
+ * in progress. A permit is held until the handler's response, including any CompletionStage it
+ * returns, is complete, or for at most {@link #PERMIT_LEASE_PROPERTY} milliseconds so a stage
+ * that never completes can't keep it. An invocation waits at most
+ * {@link #CONCURRENCY_WAIT_PROPERTY} milliseconds for a permit, then fails.
+ * <p>
+ * A handler with a deadline always runs off the calling thread, so it can be abandoned when
+ * the deadline passes. If virtual threads aren't in use it runs on a shared pool of daemon
+ * threads, bounded by {@link #DEADLINE_THREADS_PROPERTY} and created when it is first needed.
+ * Rather than wait, the fallback is returned straight away when the skill is at its
+ * {@link Skill#maxConcurrency()} or every thread in the pool is busy. The fallback is formatted
+ * on the common pool rather than on the timer thread, so one slow fallback doesn't hold up
+ * other deadlines.
+ */
+final class HandlerExecutor {
+    /**
+     * The system property that runs handler invocations on virtual threads.
+     */
+    static final String VIRTUAL_THREADS_PROPERTY = "net.kebernet.skillz.virtualThreads";
+    /**
+     * The system property with the most handlers with deadlines run at once, across all skills,
+     * when virtual threads aren't in use.
+     */
+    static final String DEADLINE_THREADS_PROPERTY = "net.kebernet.skillz.deadlineThreads";
+    /**
+     * The system property with how long, in milliseconds, an invocation waits for a permit when
+     * the skill is at its {@link Skill#maxConcurrency()}.
+     */
+    static final String CONCURRENCY_WAIT_PROPERTY = "net.kebernet.skillz.concurrencyWait";
+    /**
+     * The system property with how long, in milliseconds, a CompletionStage may hold its permit.
+     */
+    static final String PERMIT_LEASE_PROPERTY = "net.kebernet.skillz.permitLease";
+    private static final long CONCURRENCY_WAIT = Long.getLong(CONCURRENCY_WAIT_PROPERTY, 1000L);
+    private static final long PERMIT_LEASE = Long.getLong(PERMIT_LEASE_PROPERTY, 30000L);
+    private static final Logger LOGGER = Logger.getLogger(HandlerExecutor.class.getCanonicalName());
+    private static final int DEADLINE_THREADS = Math.max(1, Integer.getInteger(DEADLINE_THREADS_PROPERTY, 64));
+    @Nullable
+    private static final Executor VIRTUAL_THREADS = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) ?
+            virtualThreads() : null;
+    @Nullable
+    private final Executor executor;
+    @Nullable
+    private final Semaphore permits;
+    private final long concurrencyWait;
+    private final long permitLease;
+
+    HandlerExecutor(@Nullable Executor executor, int maxConcurrency) {
+        this(executor, maxConcurrency, CONCURRENCY_WAIT, PERMIT_LEASE);
+    }
+
+    @VisibleForTesting
+    HandlerExecutor(@Nullable Executor executor, int maxConcurrency, long concurrencyWait, long permitLease) {
+        this.executor = executor;
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+        this.concurrencyWait = concurrencyWait;
+        this.permitLease = permitLease;
+    }
+
+    /**
+     * Creates the executor for a skill type.
+     * @param type The class annotated with {@link Skill}.
+     * @return The executor.
+     */
+    static HandlerExecutor forSkill(Class<?> type) {
+        Skill skill = type.getAnnotation(Skill.class);
+        return new HandlerExecutor(VIRTUAL_THREADS, skill == null ? 0 : skill.maxConcurrency());
+    }
+
+    /**
+     * Runs an invocation.
+     * @param invocation Invokes the handler and returns a SpeechletResponse, or a
+     *                   CompletionStage of one.
+     * @return The invocation's result, or a CompletionStage of the response if it runs on
+     * another thread.
+     */
+    Object execute(Supplier<Object> invocation) {
+        if (executor == null) {
+            return run(invocation);
+        }
+        return CompletableFuture.supplyAsync(() -> run(invocation), executor)
+                .thenCompose(DynamicSpeechlet::stage);
+    }
+
+    /**
+     * Runs an invocation off the calling thread, and gives up on it after a deadline.
+     * @param invocation Invokes the handler and returns a SpeechletResponse, or a
+     *                   CompletionStage of one.
+     * @param millis The deadline in milliseconds.
+     * @param fallback Creates the response to return instead when the deadline passes.
+     * @param onTimeout Called before the fallback is returned, when the deadline passes or no
+     *                  thread is free to run the handler.
+     * @return A stage that completes with the handler's response or the fallback.
+     */
+    CompletionStage<SpeechletResponse> execute(Supplier<Object> invocation, long millis,
+                                               Supplier<SpeechletResponse> fallback, Runnable onTimeout) {
+        if (permits != null && !permits.tryAcquire()) {
+            LOGGER.fine("The skill is at its maxConcurrency, returning the fallback");
+            onTimeout.run();
+            return CompletableFuture.completedFuture(fallback.get());
+        }
+        CompletableFuture<SpeechletResponse> handled;
+        try {
+            handled = CompletableFuture.supplyAsync(() -> permits == null ? invocation.get() : holding(invocation),
+                    executor == null ? Shared.HANDLERS : executor)
+                    .thenCompose(DynamicSpeechlet::stage);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "No thread free for the handler, returning the fallback", e);
+            if (permits != null) {
+                permits.release();
+            }
+            onTimeout.run();
+            return CompletableFuture.completedFuture(fallback.get());
+        }
+        CompletableFuture<SpeechletResponse> response = new CompletableFuture<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        ScheduledFuture<?> timer = Shared.DEADLINES.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                onTimeout.run();
+                CompletableFuture.supplyAsync(fallback).whenComplete((r, e) -> settle(response, r, e));
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+        handled.whenComplete((r, e) -> {
+            timer.cancel(false);
+            if (settled.compareAndSet(false, true)) {
+                settle(response, r, e);
+            }
+        });
+        return response;
+    }
+
+    private static void settle(CompletableFuture<SpeechletResponse> response, @Nullable SpeechletResponse r,
+                               @Nullable Throwable e) {
+        if (e == null) {
+            response.complete(r);
+        } else {
+            response.completeExceptionally(e);
+        }
+    }
+
+    private Object run(Supplier<Object> invocation) {
+        if (permits == null) {
+            return invocation.get();
+        }
+        try {
+            if (!permits.tryAcquire(concurrencyWait, TimeUnit.MILLISECONDS)) {
+                throw new SkillzException("No handler finished within " + concurrencyWait +
+                        "ms, the skill is at its maxConcurrency");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SkillzException("Interrupted waiting to invoke handler", e);
+        }
+        return holding(invocation);
+    }
+
+    /**
+     * Invokes a handler while holding a permit, and releases it when the response is complete.
+     */
+    private Object holding(Supplier<Object> invocation) {
+        Object response;
+        try {
+            response = invocation.get();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+        if (response instanceof CompletionStage) {
+            return lease((CompletionStage<?>) response);
+        }
+        permits.release();
+        return response;
+    }
+
+    /**
+     * Releases the permit held for a stage when it completes, or when the lease runs out.
+     */
+    private CompletionStage<?> lease(CompletionStage<?> stage) {
+        AtomicBoolean held = new AtomicBoolean(true);
+        ScheduledFuture<?> expiry = Shared.DEADLINES.schedule(() -> {
+            if (held.compareAndSet(true, false)) {
+                LOGGER.warning("A handler's CompletionStage is still incomplete after " + permitLease +
+                        "ms, releasing its permit");
+                permits.release();
+            }
+        }, permitLease, TimeUnit.MILLISECONDS);
+        return stage.whenComplete((r, e) -> {
+            expiry.cancel(false);
+            if (held.compareAndSet(true, false)) {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Creates a pool that starts threads as they are needed, up to a limit, and rejects work
+     * rather than queueing it when they are all busy.
+     */
+    private static ExecutorService boundedThreads(int limit) {
+        return new ThreadPoolExecutor(0, limit, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("skillz-handler-%d").build());
+    }
+
+    /**
+     * The timer for deadlines and permit leases, and the threads for handlers with deadlines,
+     * created when they are first used.
+     */
+    private static final class Shared {
+        static final ExecutorService HANDLERS = boundedThreads(DEADLINE_THREADS);
+        static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("skillz-deadline").build());
+    }
+
+    @VisibleForTesting
+    @Nullable
+    static Executor virtualThreads() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Virtual threads are not available on Java " +
+                    System.getProperty("java.version") + ", invoking handlers on the request thread", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import net.kebernet.skillz.TypeFactory;
+import net.kebernet.skillz.annotation.InstanceScope;
+import net.kebernet.skillz.annotation.ResponseFormatter;
+import net.kebernet.skillz.annotation.Skill;
+import net.kebernet.skillz.util.LeasingPool;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+
+/**
+ * Supplies the skill instances a {@link DynamicSpeechlet} invokes events on, according to
+ * the {@link InstanceScope} declared on the {@link Skill}, and the declared formatters it
+ * formats responses with.
+ */
+abstract class InstanceProvider {
+
+    /**
+     * Gets an instance to handle a single event.
+     * @return The skill instance.
+     */
+    abstract Object acquire();
+
+    /**
+     * Returns an instance once the event is finished with it.
+     * @param instance The instance from {@link #acquire()}.
+     */
+    void release(Object instance) {
+    }
+
+    /**
+     * Creates the provider for a skill type.
+     * @param type The skill type.
+     * @param typeFactory The TypeFactory to create instances with.
+     * @return A provider for the scope declared on the type.
+     */
+    static InstanceProvider forSkill(@Nonnull Class<?> type, @Nonnull TypeFactory typeFactory) {
+        Skill skill = type.getAnnotation(Skill.class);
+        return skill == null ? new PerRequestProvider(type, typeFactory) :
+                forScope(type, typeFactory, skill.scope(), skill.poolSize());
+    }
+
+    /**
+     * Creates the provider for the formatter declared on a method.
+     * @param formatter The ResponseFormatter annotation.
+     * @param typeFactory The TypeFactory to create instances with.
+     * @return A provider for the declared scope, or a shared one if the formatter type is a Singleton.
+     */
+    static InstanceProvider forFormatter(@Nonnull ResponseFormatter formatter, @Nonnull TypeFactory typeFactory) {
+        InstanceScope scope = formatter.value().isAnnotationPresent(Singleton.class) ?
+                InstanceScope.SINGLETON : formatter.scope();
+        return forScope(formatter.value(), typeFactory, scope, formatter.poolSize());
+    }
+
+    private static InstanceProvider forScope(Class<?> type, TypeFactory typeFactory, InstanceScope scope, int poolSize) {
+        switch (scope) {
+            case SINGLETON:
+                return new SingletonProvider(type, typeFactory);
+            case POOLED:
+                return new PooledProvider(type, typeFactory, poolSize);
+            default:
+                return new PerRequestProvider(type, typeFactory);
+        }
+    }
+
+    /**
+     * Creates a provider that always returns the same instance.
+     * @param instance The instance.
+     * @return A provider.
+     */
+    static InstanceProvider of(@Nonnull Object instance) {
+        return new InstanceProvider() {
+            @Override
+            Object acquire() {
+                return instance;
+            }
+        };
+    }
+
+    /**
+     * Creates a new instance for every event.
+     */
+    private static class PerRequestProvider extends InstanceProvider {
+        private final Class<?> type;
+        private final TypeFactory typeFactory;
+
+        private PerRequestProvider(Class<?> type, TypeFactory typeFactory) {
+            this.type = type;
+            this.typeFactory = typeFactory;
+        }
+
+        @Override
+        Object acquire() {
+            return typeFactory.create(type);
+        }
+    }
+
+    /**
+     * Lazily creates one instance and shares it with every event.
+     */
+    private static class SingletonProvider extends InstanceProvider {
+        private final Class<?> type;
+        private final TypeFactory typeFactory;
+        private volatile Object instance;
+
+        private SingletonProvider(Class<?> type, TypeFactory typeFactory) {
+            this.type = type;
+            this.typeFactory = typeFactory;
+        }
+
+        @Override
+        Object acquire() {
+            Object result = instance;
+            if (result == null) {
+                synchronized (this) {
+                    result = instance;
+                    if (result == null) {
+                        instance = result = typeFactory.create(type);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Checks instances out of a bounded pool for each event.
+     */
+    private static class PooledProvider extends InstanceProvider {
+        private final LeasingPool<Object> pool;
+
+        @SuppressWarnings("unchecked")
+        private PooledProvider(Class<?> type, TypeFactory typeFactory, int poolSize) {
+            this.pool = new LeasingPool<>(typeFactory, (Class<Object>) type, poolSize);
+        }
+
+        @Override
+        Object acquire() {
+            return pool.checkout();
+        }
+
+        @Override
+        void release(Object instance) {
+            pool.checkin(instance);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import java.util.logging.Logger;
+
+/**
+ * Determines how the {@link DynamicSpeechlet} calls methods on Skill implementations.
+ */
+public enum InvocationMode {
+    /**
+     * Each handler gets a MethodHandle built when the Registry is created, and arguments are
+     * passed positionally from the compiled parameter binders. Handlers that can't be
+     * resolved to a MethodHandle will fall back to {@link #INVOKER}.
+     */
+    METHOD_HANDLE,
+    /**
+     * Handlers are called through the reflective <code>net.kebernet.invoker</code> runtime,
+     * matching parameter values by name.
+     */
+    INVOKER;
+
+    /**
+     * The system property that sets the default mode for a Registry.
+     */
+    public static final String SYSTEM_PROPERTY = "net.kebernet.skillz.invocationMode";
+
+    /**
+     * Reads the default mode from the system properties.
+     * @return The mode from {@link #SYSTEM_PROPERTY} or METHOD_HANDLE if it isn't set or isn't valid.
+     */
+    public static InvocationMode fromSystemProperties() {
+        String mode = System.getProperty(SYSTEM_PROPERTY, METHOD_HANDLE.name());
+        try {
+            return valueOf(mode.trim());
+        } catch (IllegalArgumentException e) {
+            Logger.getLogger(InvocationMode.class.getCanonicalName()).warning("Unknown invocation mode " + mode +
+                    " in " + SYSTEM_PROPERTY + ", using " + METHOD_HANDLE);
+            return METHOD_HANDLE;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import net.kebernet.invoker.runtime.ParameterValue;
+import net.kebernet.invoker.runtime.impl.InvokableMethod;
+import net.kebernet.skillz.annotation.ExpressionValue;
+import net.kebernet.skillz.annotation.Slot;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled parameter binding for a skill method. This holds one {@link ParameterBinder}
+ * per annotated parameter, so binding a request is a simple loop over the array.
+ */
+class MethodBinder {
+    private final ParameterBinder[] binders;
+    /**
+     * Whether any parameter needs the OGNL context. Simple property paths don't.
+     */
+    private final boolean needsContext;
+    /**
+     * The argument array for the method with only default values. Primitive parameters get
+     * their zero value, everything else is null.
+     */
+    private final Object[] defaults;
+
+    private MethodBinder(ParameterBinder[] binders, boolean needsContext, Object[] defaults) {
+        this.binders = binders;
+        this.needsContext = needsContext;
+        this.defaults = defaults;
+    }
+
+    /**
+     * Compiles the binders for a method.
+     * @param method The InvokableMethod to build binders for.
+     * @param expressions The table to take compiled expressions from.
+     * @return A MethodBinder for the method.
+     */
+    static MethodBinder compile(@Nonnull InvokableMethod method, @Nonnull ExpressionTable expressions) {
+        Method nativeMethod = method.getNativeMethod();
+        String owner = nativeMethod.getDeclaringClass().getCanonicalName() + "." + nativeMethod.getName();
+        Parameter[] parameters = nativeMethod.getParameters();
+        List<ParameterBinder> binders = new ArrayList<>();
+        Object[] defaults = new Object[parameters.length];
+        boolean needsContext = false;
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
+            String name = Registry.createParameterName(parameter);
+            Slot slot = parameter.getAnnotation(Slot.class);
+            ExpressionValue expression = parameter.getAnnotation(ExpressionValue.class);
+            if (slot != null) {
+                binders.add(new ParameterBinder.SlotBinder(i, name, parameter.getType(), slot.name(), owner));
+            } else if (expression != null) {
+                CompiledExpression compiled = expressions.get(expression.value());
+                binders.add(new ParameterBinder.ExpressionBinder(i, name, parameter.getType(), compiled));
+                needsContext |= !compiled.isPropertyPath();
+            }
+            defaults[i] = defaultValue(parameter.getType());
+        }
+        return new MethodBinder(binders.toArray(new ParameterBinder[binders.size()]), needsContext, defaults);
+    }
+
+    /**
+     * Creates a list of ParameterValues to use as possible invocation arguments
+     * @param request The SpeechletRequest to use.
+     * @param session The session to use.
+     * @return A List of parameter values evaluated from the request and session context.
+     */
+    List<ParameterValue> bind(SpeechletRequest request, Session session) {
+        return bind(request, session, null);
+    }
+
+    /**
+     * Creates a list of ParameterValues to use as possible invocation arguments, and optionally
+     * fills in the positional arguments for the method at the same time.
+     * @param request The SpeechletRequest to use.
+     * @param session The session to use.
+     * @param arguments An array from {@link #newArguments()} to fill, or null.
+     * @return A List of parameter values evaluated from the request and session context.
+     */
+    List<ParameterValue> bind(SpeechletRequest request, Session session, @Nullable Object[] arguments) {
+        Map<String, Object> context = createContext(request, session);
+        ArrayList<ParameterValue> values = new ArrayList<>(binders.length);
+        for (ParameterBinder binder : binders) {
+            Object value = binder.bind(request, session, context);
+            if (value != ParameterBinder.ABSENT) {
+                values.add(new ParameterValue(binder.name, value));
+                if (arguments != null && value != null) {
+                    arguments[binder.index] = value;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Creates the positional arguments for the method.
+     * @param request The SpeechletRequest to use.
+     * @param session The session to use.
+     * @return An array with one value per method parameter.
+     */
+    Object[] bindArguments(SpeechletRequest request, Session session) {
+        Map<String, Object> context = createContext(request, session);
+        Object[] arguments = newArguments();
+        for (ParameterBinder binder : binders) {
+            Object value = binder.bind(request, session, context);
+            if (value != ParameterBinder.ABSENT && value != null) {
+                arguments[binder.index] = value;
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Creates an argument array holding the default values for each parameter.
+     * @return A new array.
+     */
+    Object[] newArguments() {
+        return defaults.clone();
+    }
+
+    @Nullable
+    private Map<String, Object> createContext(SpeechletRequest request, Session session) {
+        return needsContext ? CompiledExpression.createContext(request, session) : null;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        } else if (type == boolean.class) {
+            return Boolean.FALSE;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0F;
+        } else {
+            return 0D;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import net.kebernet.skillz.SkillzException;
+import net.kebernet.skillz.util.Coercion;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * A prebuilt extractor for a single parameter of a skill method. These are created once, at
+ * registration time, by {@link MethodBinder#compile(net.kebernet.invoker.runtime.impl.InvokableMethod, ExpressionTable)},
+ * so that binding a request doesn't need to look at annotations.
+ */
+abstract class ParameterBinder {
+    /**
+     * Marker returned when there is no value for the parameter on the request.
+     */
+    static final Object ABSENT = new Object();
+    private static final Coercion COERCION = new Coercion();
+
+    /**
+     * The position of the parameter on the method.
+     */
+    final int index;
+    /**
+     * The parameter name as the Invoker knows it.
+     */
+    final String name;
+    /**
+     * The declared type of the parameter.
+     */
+    final Class<?> type;
+    /**
+     * The converter for the last source type seen. Almost every parameter only ever sees one.
+     */
+    private volatile Conversion conversion;
+
+    private ParameterBinder(int index, String name, Class<?> type) {
+        this.index = index;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Extracts the value of this parameter from the request.
+     * @param request The SpeechletRequest
+     * @param session The Session
+     * @param context The OGNL context, if the method has expressions that need one.
+     * @return The coerced value, or {@link #ABSENT}
+     */
+    abstract Object bind(SpeechletRequest request, Session session, @Nullable Map<String, Object> context);
+
+    Object coerce(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Conversion current = conversion;
+        if (current == null || current.sourceType != value.getClass()) {
+            current = new Conversion(value.getClass(), COERCION.converterFor(value.getClass(), type));
+            conversion = current;
+        }
+        return current.converter.convert(value);
+    }
+
+    /**
+     * A converter handle and the source type it was resolved for.
+     */
+    private static class Conversion {
+        final Class<?> sourceType;
+        final Coercion.Converter<Object, ?> converter;
+
+        private Conversion(Class<?> sourceType, Coercion.Converter<Object, ?> converter) {
+            this.sourceType = sourceType;
+            this.converter = converter;
+        }
+    }
+
+    /**
+     * Binds a parameter from a slot value on an IntentRequest.
+     */
+    static class SlotBinder extends ParameterBinder {
+        private final String slotName;
+        private final String owner;
+
+        SlotBinder(int index, String name, Class<?> type, String slotName, String owner) {
+            super(index, name, type);
+            this.slotName = slotName;
+            this.owner = owner;
+        }
+
+        @Override
+        Object bind(SpeechletRequest request, Session session, @Nullable Map<String, Object> context) {
+            if (!(request instanceof IntentRequest)) {
+                throw new SkillzException(owner + " cannot declare a slot unless it is handling and IntentRequest.");
+            }
+            com.amazon.speech.slu.Slot slot = ((IntentRequest) request).getIntent().getSlot(slotName);
+            return slot == null ? ABSENT : coerce(slot.getValue());
+        }
+    }
+
+    /**
+     * Binds a parameter from an expression evaluated against the request and session.
+     */
+    static class ExpressionBinder extends ParameterBinder {
+        private final CompiledExpression expression;
+
+        ExpressionBinder(int index, String name, Class<?> type, CompiledExpression expression) {
+            super(index, name, type);
+            this.expression = expression;
+        }
+
+        @Override
+        Object bind(SpeechletRequest request, Session session, @Nullable Map<String, Object> context) {
+            return coerce(expression.getValue(request, session, context));
+        }
+    }
+}
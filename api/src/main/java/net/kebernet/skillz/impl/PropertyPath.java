@@ -0,0 +1,181 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import net.kebernet.skillz.SkillzException;
+
+import javax.annotation.Nullable;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A simple dotted property path, like <code>session.user.userId</code> or <code>request.locale</code>,
+ * rooted at the request or the session. It is evaluated as a chain of getter calls, without
+ * OGNL or a context map. Each segment caches the getter for the last type it saw, and
+ * {@link Map} values are read with {@link Map#get(Object)}.
+ * <p>
+ * If a segment can't be resolved, or a value along the path is null, the path returns
+ * {@link #UNRESOLVED} and the caller should fall back to OGNL, so errors are reported the same way.
+ * An exception thrown by a getter is not retried through OGNL. It is thrown wrapped in a
+ * SkillzException, as OGNL would report it.
+ * </p>
+ */
+class PropertyPath {
+    /**
+     * Returned when the path can't be evaluated directly.
+     */
+    static final Object UNRESOLVED = new Object();
+    private static final Pattern SIMPLE_PATH = Pattern.compile("(request|session)(\\.[A-Za-z_$][A-Za-z0-9_$]*)*");
+    private static final String REQUEST = "request";
+
+    private final String expression;
+    private final boolean fromRequest;
+    private final Segment[] segments;
+
+    private PropertyPath(String expression, boolean fromRequest, Segment[] segments) {
+        this.expression = expression;
+        this.fromRequest = fromRequest;
+        this.segments = segments;
+    }
+
+    /**
+     * Parses an expression as a property path.
+     * @param expression The expression.
+     * @return The PropertyPath, or null if the expression needs OGNL.
+     */
+    @Nullable
+    static PropertyPath parse(String expression) {
+        String trimmed = expression.trim();
+        if (!SIMPLE_PATH.matcher(trimmed).matches()) {
+            return null;
+        }
+        String[] names = trimmed.split("\\.");
+        Segment[] segments = new Segment[names.length - 1];
+        for (int i = 1; i < names.length; i++) {
+            segments[i - 1] = new Segment(names[i]);
+        }
+        return new PropertyPath(trimmed, REQUEST.equals(names[0]), segments);
+    }
+
+    /**
+     * Evaluates the path.
+     * @param request The SpeechletRequest
+     * @param session The Session
+     * @return The value, or {@link #UNRESOLVED}
+     * @throws SkillzException If a getter along the path throws.
+     */
+    Object getValue(SpeechletRequest request, Session session) {
+        Object value = fromRequest ? request : session;
+        try {
+            for (Segment segment : segments) {
+                if (value == null) {
+                    return UNRESOLVED;
+                }
+                value = segment.get(value);
+                if (value == UNRESOLVED) {
+                    return UNRESOLVED;
+                }
+            }
+        } catch (InvocationTargetException e) {
+            throw new SkillzException("Failed to evaluate " + expression, e.getCause());
+        }
+        return value;
+    }
+
+    /**
+     * A single property name in the path, with a cache of the getter for the last type seen.
+     */
+    private static class Segment {
+        private final String name;
+        private final boolean mapKey;
+        private volatile Getter cached;
+
+        private Segment(String name) {
+            this.name = name;
+            // OGNL treats these names as pseudo-properties on a Map, so they aren't plain lookups.
+            this.mapKey = !("size".equals(name) || "isEmpty".equals(name) || "keys".equals(name) ||
+                    "keySet".equals(name) || "values".equals(name));
+        }
+
+        Object get(Object target) throws InvocationTargetException {
+            if (target instanceof Map) {
+                return mapKey ? ((Map<?, ?>) target).get(name) : UNRESOLVED;
+            }
+            Getter getter = cached;
+            if (getter == null || getter.type != target.getClass()) {
+                getter = new Getter(target.getClass(), findReadMethod(target.getClass(), name));
+                cached = getter;
+            }
+            if (getter.method == null) {
+                return UNRESOLVED;
+            }
+            try {
+                return getter.method.invoke(target);
+            } catch (IllegalAccessException e) {
+                return UNRESOLVED;
+            }
+        }
+
+        @Nullable
+        private static Method findReadMethod(Class<?> type, String name) {
+            try {
+                for (PropertyDescriptor descriptor : Introspector.getBeanInfo(type).getPropertyDescriptors()) {
+                    if (name.equals(descriptor.getName()) && descriptor.getReadMethod() != null) {
+                        return accessible(descriptor.getReadMethod());
+                    }
+                }
+            } catch (IntrospectionException | RuntimeException e) {
+                return null;
+            }
+            return null;
+        }
+
+        @Nullable
+        private static Method accessible(Method method) {
+            if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                return method;
+            }
+            try {
+                method.setAccessible(true);
+                return method;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A getter resolved for a type, or a null method if the type has no such property.
+     */
+    private static class Getter {
+        final Class<?> type;
+        @Nullable
+        final Method method;
+
+        private Getter(Class<?> type, @Nullable Method method) {
+            this.type = type;
+            this.method = method;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package net.kebernet.skillz.impl;
 
+import com.google.common.collect.ImmutableMap;
 import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
 import net.kebernet.invoker.runtime.Invoker;
 import net.kebernet.invoker.runtime.impl.IntrospectionData;
@@ -27,12 +28,14 @@ import net.kebernet.skillz.annotation.SessionStarted;
 import net.kebernet.skillz.annotation.Skill;
 import net.kebernet.skillz.annotation.Slot;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -51,12 +54,25 @@ public class Registry {
     private static final Logger LOGGER = Logger.getLogger(Registry.class.getCanonicalName());
     private final Invoker invoker;
     private final Map<String, Class<?>> pathsToClasses;
+    private final InvocationMode invocationMode;
+    private final ExpressionTable expressions = new ExpressionTable();
+    private final ImmutableMap<String, DispatchTable> dispatchTables;
 
 
     public Registry(Set<Class<?>> types){
+        this(types, InvocationMode.fromSystemProperties());
+    }
+
+    /**
+     * Creates a registry for the given types.
+     * @param types The Skill types.
+     * @param invocationMode How skill methods will be invoked.
+     */
+    public Registry(Set<Class<?>> types, InvocationMode invocationMode){
+        this.invocationMode = invocationMode;
         this.invoker = new Invoker(Registry::createMethodName, Registry::createParameterName);
         this.pathsToClasses = new HashMap<>(types.size());
-        init(types);
+        this.dispatchTables = init(types);
     }
 
     /**
@@ -69,18 +85,20 @@ public class Registry {
         HashSet<Class<?>> types = new HashSet<>();
         new FastClasspathScanner().matchClassesWithAnnotation(Skill.class, types::add)
                 .scan();
+        this.invocationMode = InvocationMode.fromSystemProperties();
         this.invoker = new Invoker(Registry::createMethodName, Registry::createParameterName);
         this.pathsToClasses = new HashMap<>(types.size());
         LOGGER.fine("Scan for skills complete.");
-        init(types);
+        this.dispatchTables = init(types);
     }
 
-    private void init(Set<Class<?>> types) {
+    private ImmutableMap<String, DispatchTable> init(Set<Class<?>> types) {
         StringBuilder sb = new StringBuilder();
         types.forEach(t->sb.append(t.getCanonicalName()).append(' '));
         LOGGER.info("Introspecting: "+sb.toString());
         types.forEach(this.invoker::registerType);
         types.forEach(this::validateType);
+        types.forEach(expressions::register);
         LOGGER.info("Skill introspection complete. Found "+types.size()+" skills.");
         types.forEach((c)-> {
             String path = c.getAnnotation(Skill.class).path();
@@ -94,6 +112,9 @@ public class Registry {
                         c.getCanonicalName()+" are attempting to register for '"+path+"'");
             }
         });
+        ImmutableMap.Builder<String, DispatchTable> tables = ImmutableMap.builder();
+        pathsToClasses.forEach((path, c) -> tables.put(path, new DispatchTable(path, invoker.lookupType(c), this)));
+        return tables.build();
     }
 
     private void validateType(Class<?> aClass) {
@@ -105,12 +126,47 @@ public class Registry {
                 .map(invoker::lookupType);
     }
 
+    /**
+     * Returns the precompiled dispatch table for a path.
+     * @param path The path, starting with "/"
+     * @return The DispatchTable or null if no skill is mapped to the path.
+     */
+    @Nullable
+    public DispatchTable getDispatchTable(String path){
+        return dispatchTables.get(path);
+    }
+
+    /**
+     * Returns the precompiled dispatch tables for every registered skill.
+     * @return A collection of DispatchTables.
+     */
+    public Collection<DispatchTable> getAllDispatchTables(){
+        return dispatchTables.values();
+    }
+
     public Set<IntrospectionData> getAllIntrospectionData(){
         return this.pathsToClasses.values().stream()
                 .map(invoker::lookupType)
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * How the dispatch tables from this registry invoke skill methods.
+     * @return The InvocationMode.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public InvocationMode getInvocationMode(){
+        return this.invocationMode;
+    }
+
+    /**
+     * The compiled ExpressionValue expressions for every registered skill.
+     * @return The ExpressionTable.
+     */
+    ExpressionTable getExpressions(){
+        return this.expressions;
+    }
+
     @SuppressWarnings("WeakerAccess")
     public Invoker getInvoker(){
         return this.invoker;
@@ -0,0 +1,128 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * The request body as the envelope parser reads it. Every byte that passes through is counted
+ * against a limit and added to the request signature, so the body is parsed and its signature
+ * computed in a single pass without being copied into an array first. Each thread reuses one
+ * instance, which holds nothing between requests.
+ */
+final class RequestBody extends InputStream {
+    /**
+     * The system property for the largest request body, in bytes, that will be read.
+     */
+    static final String MAX_SIZE_PROPERTY = "net.kebernet.skillz.maxRequestSize";
+    /**
+     * The largest request body that will be read.
+     */
+    static final int MAX_SIZE = Integer.getInteger(MAX_SIZE_PROPERTY, 128 * 1024);
+    private static final ThreadLocal<RequestBody> BODY = ThreadLocal.withInitial(RequestBody::new);
+    private final byte[] single = new byte[1];
+    private final byte[] rest = new byte[512];
+    private InputStream in;
+    @Nullable
+    private Signature signature;
+    private long limit;
+    private long count;
+
+    private RequestBody() {
+    }
+
+    /**
+     * Thrown when a body is larger than the limit.
+     */
+    static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(long limit) {
+            super("Request body is larger than " + limit + " bytes");
+        }
+    }
+
+    /**
+     * Wraps the body of a request for the current thread.
+     * @param in The servlet input stream.
+     * @param limit The largest number of bytes to read.
+     * @param signature The Signature to add the body to, or null if it isn't being checked.
+     * @return This thread's RequestBody. {@link #release()} it when the request is done.
+     */
+    static RequestBody open(InputStream in, long limit, @Nullable Signature signature) {
+        RequestBody body = BODY.get();
+        body.in = in;
+        body.limit = limit;
+        body.signature = signature;
+        body.count = 0;
+        return body;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            count += read;
+            if (count > limit) {
+                throw new TooLargeException(limit);
+            }
+            if (signature != null) {
+                try {
+                    signature.update(b, off, read);
+                } catch (SignatureException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads anything the parser left after the envelope, such as trailing whitespace, so it is
+     * included in the signature.
+     * @throws IOException If the stream fails or the body is too large.
+     */
+    void drain() throws IOException {
+        //noinspection StatementWithEmptyBody
+        while (read(rest, 0, rest.length) != -1) {
+        }
+    }
+
+    /**
+     * Drops the references to the request, so the thread doesn't hold on to them.
+     */
+    void release() {
+        in = null;
+        signature = null;
+    }
+
+    /**
+     * The container owns the servlet stream, so closing this, as the parser does when it
+     * finishes, leaves it open.
+     */
+    @Override
+    public void close() {
+    }
+}
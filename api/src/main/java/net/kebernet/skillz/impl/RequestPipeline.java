@@ -0,0 +1,187 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletRequestEnvelope;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.LaunchRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SessionStartedRequest;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import com.amazon.speech.speechlet.SpeechletRequestDispatcher;
+import com.amazon.speech.speechlet.SpeechletRequestHandlerException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.speechlet.verifier.ApplicationIdSpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.CardSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.OutputSpeechSpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestEnvelopeVerifier;
+import com.amazon.speech.speechlet.verifier.SpeechletRequestVerifierWrapper;
+import com.amazon.speech.speechlet.verifier.SpeechletResponseVerifier;
+import com.amazon.speech.speechlet.verifier.TimestampSpeechletRequestVerifier;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The steps the SDK's ServletSpeechletRequestHandler takes between the request body and the
+ * response envelope. The body is parsed from a stream, and the envelope is handed back
+ * unserialized so the servlet can decide how to write it. The verifiers are configured from the same system properties as the SDK.
+ */
+final class RequestPipeline {
+    private static final Logger LOGGER = Logger.getLogger(RequestPipeline.class.getCanonicalName());
+    /**
+     * The largest response the Alexa service accepts.
+     */
+    static final int MAX_RESPONSE_SIZE = 24576;
+    private final DynamicSpeechlet speechlet;
+    private final SpeechletRequestDispatcher dispatcher;
+    private final ImmutableList<SpeechletRequestEnvelopeVerifier> requestVerifiers;
+    /**
+     * The SDK's response verifiers, except the size check, which needs the serialized
+     * response and is done by the servlet as it writes.
+     */
+    private final ImmutableList<SpeechletResponseVerifier> responseVerifiers = ImmutableList.of(
+            new OutputSpeechSpeechletResponseVerifier(),
+            new CardSpeechletResponseVerifier());
+
+    /**
+     * Creates a pipeline for a speechlet.
+     * @param speechlet The speechlet to dispatch to.
+     */
+    RequestPipeline(DynamicSpeechlet speechlet) {
+        this.speechlet = speechlet;
+        this.dispatcher = new SpeechletRequestDispatcher(speechlet);
+        ImmutableList.Builder<SpeechletRequestEnvelopeVerifier> verifiers = ImmutableList.builder();
+        String applicationIds = System.getProperty(Sdk.SUPPORTED_APPLICATION_IDS_SYSTEM_PROPERTY);
+        verifiers.add(new ApplicationIdSpeechletRequestEnvelopeVerifier(Strings.isNullOrEmpty(applicationIds) ?
+                ImmutableSet.of() :
+                ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(applicationIds))));
+        String tolerance = System.getProperty(Sdk.TIMESTAMP_TOLERANCE_SYSTEM_PROPERTY);
+        if (Strings.isNullOrEmpty(tolerance)) {
+            LOGGER.warning("No timestamp tolerance has been configured, disabling timestamp verification");
+        } else {
+            try {
+                verifiers.add(new SpeechletRequestVerifierWrapper(
+                        new TimestampSpeechletRequestVerifier(Long.parseLong(tolerance.trim()), TimeUnit.SECONDS)));
+            } catch (NumberFormatException e) {
+                LOGGER.warning("The configured timestamp tolerance " + tolerance + " is invalid, disabling timestamp verification");
+            }
+        }
+        this.requestVerifiers = verifiers.build();
+    }
+
+    /**
+     * Parses a request envelope directly from the body.
+     * @param body The request body.
+     * @return The envelope.
+     * @throws IOException If the body can't be read or parsed.
+     */
+    SpeechletRequestEnvelope<?> parse(InputStream body) throws IOException {
+        return SpeechletRequestEnvelope.fromJson(body);
+    }
+
+    /**
+     * Verifies a request and dispatches it to the speechlet.
+     * @param request The parsed request envelope.
+     * @return The response envelope from the speechlet.
+     * @throws IOException If the speechlet fails to handle the request.
+     * @throws SpeechletRequestHandlerException If the request or response fails verification.
+     * @throws SpeechletException If the speechlet fails.
+     */
+    SpeechletResponseEnvelope dispatch(SpeechletRequestEnvelope<?> request) throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        verifyRequest(request);
+        SpeechletResponseEnvelope response = dispatcher.dispatchSpeechletCall(request, request.getSession());
+        verifyResponse(request, response);
+        return response;
+    }
+
+    /**
+     * Verifies a request and dispatches it to the speechlet without waiting for a launch or
+     * intent handler that returns a CompletionStage. Other requests are dispatched by the SDK,
+     * and are complete when they are returned.
+     * @param request The parsed request envelope.
+     * @return A stage that completes with the verified response envelope.
+     * @throws IOException If the speechlet fails to handle the request.
+     * @throws SpeechletRequestHandlerException If the request fails verification.
+     * @throws SpeechletException If the speechlet fails.
+     */
+    CompletionStage<SpeechletResponseEnvelope> dispatchAsync(SpeechletRequestEnvelope<?> request) throws IOException, SpeechletRequestHandlerException, SpeechletException {
+        SpeechletRequest speechletRequest = request.getRequest();
+        if (!(speechletRequest instanceof LaunchRequest || speechletRequest instanceof IntentRequest)) {
+            return CompletableFuture.completedFuture(dispatch(request));
+        }
+        verifyRequest(request);
+        Session session = request.getSession();
+        if (session != null && session.isNew()) {
+            speechlet.onSessionStarted(SessionStartedRequest.builder()
+                    .withRequestId(speechletRequest.getRequestId())
+                    .withLocale(speechletRequest.getLocale())
+                    .build(), session);
+        }
+        CompletionStage<SpeechletResponse> response = speechletRequest instanceof LaunchRequest ?
+                speechlet.onLaunchAsync((LaunchRequest) speechletRequest, session) :
+                speechlet.onIntentAsync((IntentRequest) speechletRequest, session);
+        return response.thenApply(r -> {
+            // The same envelope the SDK dispatcher builds.
+            SpeechletResponseEnvelope envelope = new SpeechletResponseEnvelope();
+            envelope.setVersion(Sdk.VERSION);
+            envelope.setResponse(r);
+            if (session != null && (r == null || !r.getShouldEndSession())) {
+                envelope.setSessionAttributes(session.getAttributes());
+            }
+            try {
+                verifyResponse(request, envelope);
+            } catch (SpeechletRequestHandlerException e) {
+                throw new CompletionException(e);
+            }
+            return envelope;
+        });
+    }
+
+    private void verifyRequest(SpeechletRequestEnvelope<?> request) throws SpeechletRequestHandlerException {
+        for (SpeechletRequestEnvelopeVerifier verifier : requestVerifiers) {
+            if (!verifier.verify(request)) {
+                throw new SpeechletRequestHandlerException("Could not validate SpeechletRequest "
+                        + requestId(request) + " using verifier " + verifier.getClass().getSimpleName() + ", rejecting request");
+            }
+        }
+    }
+
+    private void verifyResponse(SpeechletRequestEnvelope<?> request, SpeechletResponseEnvelope response) throws SpeechletRequestHandlerException {
+        for (SpeechletResponseVerifier verifier : responseVerifiers) {
+            if (!verifier.verify(response, request.getSession())) {
+                throw new SpeechletRequestHandlerException("Could not validate SpeechletResponse "
+                        + requestId(request) + " using verifier " + verifier.getClass().getSimpleName() + ", rejecting response");
+            }
+        }
+    }
+
+    private static String requestId(SpeechletRequestEnvelope<?> request) {
+        return request.getRequest() == null ? "null" : request.getRequest().getRequestId();
+    }
+}
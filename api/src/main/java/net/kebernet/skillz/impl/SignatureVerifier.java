@@ -0,0 +1,321 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.Sdk;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Checks the signature on requests from the Alexa service. This follows the same rules as the
+ * SDK's SpeechletRequestSignatureVerifier, but the validated signing certificates are kept in a
+ * bounded cache that expires, and each thread reuses its Signature instance. The certificates
+ * are retrieved through a {@link CertificateFetcher}, so tests can supply their own.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SignatureVerifier {
+    private static final Logger LOGGER = Logger.getLogger(SignatureVerifier.class.getCanonicalName());
+    /**
+     * The system property for the number of signing certificates to keep.
+     */
+    public static final String CACHE_SIZE_PROPERTY = "net.kebernet.skillz.certificateCacheSize";
+    /**
+     * The system property for the number of minutes a signing certificate is kept.
+     */
+    public static final String CACHE_MINUTES_PROPERTY = "net.kebernet.skillz.certificateCacheMinutes";
+    private static final String VALID_PROTOCOL = "https";
+    private static final String VALID_HOST_NAME = "s3.amazonaws.com";
+    private static final String VALID_PATH_PREFIX = "/echo.api/";
+    private static final Integer DNS_NAME = 2;
+    private static final String FAILED = "Failed to verify the signature/certificate for the provided speechlet request";
+    private static final ThreadLocal<Signature> SIGNATURE = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static volatile SignatureVerifier shared;
+
+    private final CertificateFetcher fetcher;
+    private final X509TrustManager trustManager;
+    private final LoadingCache<String, X509Certificate> certificates;
+
+    /**
+     * Retrieves the certificate chain a request was signed with.
+     */
+    @FunctionalInterface
+    public interface CertificateFetcher {
+        /**
+         * The default fetcher, which reads the URL.
+         */
+        CertificateFetcher DEFAULT = URL::openStream;
+
+        /**
+         * Opens the certificate chain at a URL that has already been checked.
+         * @param url The SignatureCertChainUrl from the request.
+         * @return A stream of PEM or DER encoded certificates, signing certificate first.
+         * @throws IOException If the chain can't be read.
+         */
+        InputStream open(URL url) throws IOException;
+    }
+
+    /**
+     * Creates a verifier that reads certificates from their URLs and checks them against the
+     * default trust store, with the cache configured from the system properties.
+     */
+    public SignatureVerifier() {
+        this(CertificateFetcher.DEFAULT, defaultTrustManager(), Long.getLong(CACHE_SIZE_PROPERTY, 16),
+                Long.getLong(CACHE_MINUTES_PROPERTY, 60), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Creates a verifier.
+     * @param fetcher Retrieves the certificate chains.
+     * @param trustManager Checks that the certificate chains are trusted.
+     * @param maximumSize The number of signing certificates to keep.
+     * @param expiry How long a signing certificate is kept before it is retrieved again.
+     * @param unit The unit for the expiry.
+     */
+    public SignatureVerifier(CertificateFetcher fetcher, X509TrustManager trustManager, long maximumSize, long expiry, TimeUnit unit) {
+        this(fetcher, trustManager, maximumSize, expiry, unit, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    SignatureVerifier(CertificateFetcher fetcher, X509TrustManager trustManager, long maximumSize, long expiry, TimeUnit unit, Ticker ticker) {
+        this.fetcher = checkNotNull(fetcher);
+        this.trustManager = checkNotNull(trustManager);
+        this.certificates = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expiry, unit)
+                .ticker(ticker)
+                .build(new CacheLoader<String, X509Certificate>() {
+                    @Override
+                    public X509Certificate load(String url) throws Exception {
+                        return retrieveAndVerifyCertificateChain(url);
+                    }
+                });
+    }
+
+    /**
+     * The verifier the servlets use unless they are given another one. Sharing it means the
+     * certificate is retrieved once for all the skills in the process.
+     * @return The shared SignatureVerifier.
+     */
+    public static SignatureVerifier shared() {
+        SignatureVerifier verifier = shared;
+        if (verifier == null) {
+            synchronized (SignatureVerifier.class) {
+                verifier = shared;
+                if (verifier == null) {
+                    verifier = new SignatureVerifier();
+                    shared = verifier;
+                }
+            }
+        }
+        return verifier;
+    }
+
+    /**
+     * Checks the signature on a request body.
+     * @param body The request body.
+     * @param signature The Signature header.
+     * @param certificateChainUrl The SignatureCertChainUrl header.
+     * @throws SecurityException If the signature or certificate is missing or not valid.
+     */
+    public void checkRequestSignature(byte[] body, @Nullable String signature, @Nullable String certificateChainUrl) {
+        Signature verifier = start(signature, certificateChainUrl);
+        try {
+            verifier.update(body);
+        } catch (SignatureException e) {
+            throw new SecurityException(FAILED, e);
+        }
+        finish(verifier, signature);
+    }
+
+    /**
+     * Starts checking a signature before the body has been read, so the body can be passed to
+     * {@link Signature#update(byte[], int, int)} as it streams in.
+     * @param signature The Signature header.
+     * @param certificateChainUrl The SignatureCertChainUrl header.
+     * @return This thread's Signature, initialized with the signing certificate.
+     * @throws SecurityException If the signature or certificate is missing or not valid.
+     */
+    public Signature start(@Nullable String signature, @Nullable String certificateChainUrl) {
+        if (signature == null || certificateChainUrl == null) {
+            throw new SecurityException("Missing signature/certificate for the provided speechlet request");
+        }
+        try {
+            X509Certificate certificate = signingCertificate(certificateChainUrl);
+            Signature verifier = SIGNATURE.get();
+            verifier.initVerify(certificate.getPublicKey());
+            return verifier;
+        } catch (GeneralSecurityException e) {
+            throw new SecurityException(FAILED, e);
+        }
+    }
+
+    /**
+     * Finishes checking a signature once the whole body has been passed to the Signature.
+     * @param verifier The Signature from {@link #start(String, String)}.
+     * @param signature The Signature header.
+     * @throws SecurityException If the signature doesn't match the body.
+     */
+    public void finish(Signature verifier, String signature) {
+        try {
+            if (!verifier.verify(Base64.getMimeDecoder().decode(signature.getBytes(StandardCharsets.UTF_8)))) {
+                throw new SecurityException(FAILED);
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new SecurityException(FAILED, e);
+        }
+    }
+
+    /**
+     * Returns the cached certificate for a URL, retrieving it again if it has expired since it
+     * was cached.
+     */
+    private X509Certificate signingCertificate(String url) throws CertificateException {
+        X509Certificate certificate = load(url);
+        try {
+            certificate.checkValidity();
+        } catch (CertificateException e) {
+            LOGGER.info("Signing certificate from " + url + " is no longer valid, retrieving it again.");
+            certificates.invalidate(url);
+            certificate = load(url);
+            certificate.checkValidity();
+        }
+        return certificate;
+    }
+
+    private X509Certificate load(String url) throws CertificateException {
+        try {
+            return certificates.get(url);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof CertificateException) {
+                throw (CertificateException) e.getCause();
+            }
+            throw new CertificateException("Unable to verify certificate at URL: " + url, e.getCause());
+        }
+    }
+
+    private X509Certificate retrieveAndVerifyCertificateChain(String url) throws CertificateException {
+        URL checked = verifyCertificateChainUrl(url);
+        LOGGER.fine("Retrieving signing certificate from " + url);
+        try (InputStream in = fetcher.open(checked)) {
+            Collection<? extends Certificate> chain =
+                    CertificateFactory.getInstance(Sdk.SIGNATURE_CERTIFICATE_TYPE).generateCertificates(in);
+            if (chain.isEmpty()) {
+                throw new CertificateException("No certificates at URL: " + url);
+            }
+            X509Certificate[] certificates = chain.toArray(new X509Certificate[chain.size()]);
+            certificates[0].checkValidity();
+            trustManager.checkServerTrusted(certificates, Sdk.SIGNATURE_KEY_TYPE);
+            if (!hasEchoDomainName(certificates[0].getSubjectAlternativeNames())) {
+                throw new CertificateException("The provided certificate is not valid for the Echo SDK");
+            }
+            return certificates[0];
+        } catch (IOException e) {
+            throw new CertificateException("Unable to verify certificate at URL: " + url, e);
+        }
+    }
+
+    private static boolean hasEchoDomainName(@Nullable Collection<List<?>> names) {
+        if (names == null) {
+            return false;
+        }
+        for (List<?> name : names) {
+            if (DNS_NAME.equals(name.get(0)) && Sdk.ECHO_API_DOMAIN_NAME.equals(name.get(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @VisibleForTesting
+    static URL verifyCertificateChainUrl(String url) throws CertificateException {
+        URL checked;
+        try {
+            checked = new URI(url).normalize().toURL();
+        } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+            throw new CertificateException("SigningCertificateChainUrl [" + url + "] is malformed", e);
+        }
+        if (!VALID_HOST_NAME.equalsIgnoreCase(checked.getHost())) {
+            throw new CertificateException("SigningCertificateChainUrl [" + url + "] does not contain the required hostname of ["
+                    + VALID_HOST_NAME + "]");
+        }
+        if (!checked.getPath().startsWith(VALID_PATH_PREFIX)) {
+            throw new CertificateException("SigningCertificateChainUrl path [" + checked.getPath()
+                    + "] is invalid. Expecting path to start with [" + VALID_PATH_PREFIX + "]");
+        }
+        if (!VALID_PROTOCOL.equalsIgnoreCase(checked.getProtocol())) {
+            throw new CertificateException("SigningCertificateChainUrl [" + url + "] contains an unsupported protocol ["
+                    + checked.getProtocol() + "]");
+        }
+        if (checked.getPort() != -1 && checked.getPort() != checked.getDefaultPort()) {
+            throw new CertificateException("SigningCertificateChainUrl [" + url + "] contains an invalid port ["
+                    + checked.getPort() + "]");
+        }
+        return checked;
+    }
+
+    private static X509TrustManager defaultTrustManager() {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+            for (TrustManager manager : factory.getTrustManagers()) {
+                if (manager instanceof X509TrustManager) {
+                    return (X509TrustManager) manager;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to load the default trust store", e);
+        }
+        throw new IllegalStateException("No X509 TrustManager available. Unable to check certificate chain");
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.util;
+
+import javax.annotation.Nullable;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.IsoFields;
+
+/**
+ * Parsers for the values of the {@link AmazonSlotTypes#DATE}, {@link AmazonSlotTypes#TIME} and
+ * {@link AmazonSlotTypes#DURATION} slot types. These scan the value directly rather than trying a
+ * series of patterns, and return null for values they don't understand.
+ * <p>
+ * Dates that name a range resolve to its first day: a week to its Monday, a weekend to its
+ * Saturday, a month, season, year or decade to its first day. Seasons start on the first of
+ * March, June, September and December. An <code>X</code> in the year takes the current year,
+ * and in the month or day takes the first.
+ * </p>
+ */
+@SuppressWarnings("WeakerAccess")
+public abstract class AmazonDates {
+
+    private static final String PRESENT_REF = "PRESENT_REF";
+    private static final LocalTime MORNING = LocalTime.of(6, 0);
+    private static final LocalTime AFTERNOON = LocalTime.of(12, 0);
+    private static final LocalTime EVENING = LocalTime.of(17, 0);
+    private static final LocalTime NIGHT = LocalTime.of(21, 0);
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    private AmazonDates(){}
+
+    /**
+     * Parses an AMAZON.DATE value, such as <code>2016-10-23</code>, <code>2016-W43</code>,
+     * <code>2016-W43-WE</code>, <code>2016-10</code>, <code>2016-WI</code>, <code>201X</code>
+     * or <code>XXXX-10-23</code>.
+     * @param value The slot value.
+     * @return The date, or null.
+     */
+    @Nullable
+    public static LocalDate parseDate(@Nullable String value){
+        return parseDate(value, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Parses an AMAZON.DATE value.
+     * @param value The slot value.
+     * @param clock The clock to resolve unspecified years and <code>PRESENT_REF</code> with.
+     * @return The date, or null.
+     */
+    @Nullable
+    public static LocalDate parseDate(@Nullable String value, Clock clock){
+        if(value == null){
+            return null;
+        }
+        String s = value.trim();
+        if(PRESENT_REF.equals(s)){
+            return LocalDate.now(clock);
+        }
+        int length = s.length();
+        if(length < 4){
+            return null;
+        }
+        try {
+            int year;
+            if(s.charAt(3) == 'X' && isDigits(s, 0, 3)){
+                // A decade, 201X
+                year = digits(s, 0, 3) * 10;
+            } else if(isX(s, 0, 4)){
+                year = LocalDate.now(clock).getYear();
+            } else if(isDigits(s, 0, 4)){
+                year = digits(s, 0, 4);
+            } else {
+                return null;
+            }
+            if(length == 4){
+                return LocalDate.of(year, 1, 1);
+            }
+            if(s.charAt(4) != '-' || length < 7){
+                return null;
+            }
+            char c = s.charAt(5);
+            if(c == 'W' && length >= 7 && s.charAt(6) != 'I'){
+                return week(s, year, length);
+            }
+            if(length == 7){
+                if(isDigits(s, 5, 7)){
+                    return LocalDate.of(year, digits(s, 5, 7), 1);
+                } else if(isX(s, 5, 7)){
+                    return LocalDate.of(year, 1, 1);
+                }
+                return season(s, year);
+            }
+            if(length != 10 || s.charAt(7) != '-'){
+                return null;
+            }
+            int month = isX(s, 5, 7) ? 1 : isDigits(s, 5, 7) ? digits(s, 5, 7) : -1;
+            int day = isX(s, 8, 10) ? 1 : isDigits(s, 8, 10) ? digits(s, 8, 10) : -1;
+            return month < 0 || day < 0 ? null : LocalDate.of(year, month, day);
+        } catch(DateTimeException e){
+            return null;
+        }
+    }
+
+    /**
+     * Parses an AMAZON.TIME value, such as <code>14:25</code>, <code>14:25:30</code> or one of
+     * <code>MO</code>, <code>AF</code>, <code>EV</code> or <code>NI</code> for the morning, afternoon,
+     * evening and night.
+     * @param value The slot value.
+     * @return The time, or null.
+     */
+    @Nullable
+    public static LocalTime parseTime(@Nullable String value){
+        if(value == null){
+            return null;
+        }
+        String s = value.trim();
+        switch(s){
+            case "MO":
+                return MORNING;
+            case "AF":
+                return AFTERNOON;
+            case "EV":
+                return EVENING;
+            case "NI":
+                return NIGHT;
+            default:
+                break;
+        }
+        try {
+            int length = s.length();
+            if((length == 5 || length == 8) && s.charAt(2) == ':' && isDigits(s, 0, 2) && isDigits(s, 3, 5)){
+                if(length == 5){
+                    return LocalTime.of(digits(s, 0, 2), digits(s, 3, 5));
+                } else if(s.charAt(5) == ':' && isDigits(s, 6, 8)){
+                    return LocalTime.of(digits(s, 0, 2), digits(s, 3, 5), digits(s, 6, 8));
+                }
+            }
+        } catch(DateTimeException e){
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Parses an AMAZON.DURATION value, an ISO-8601 duration such as <code>PT15M</code>, <code>P2W</code>
+     * or <code>P1DT2H</code>. Years are counted as 365 days and months as 30 days.
+     * @param value The slot value.
+     * @return The duration, or null.
+     */
+    @Nullable
+    public static Duration parseDuration(@Nullable String value){
+        if(value == null){
+            return null;
+        }
+        String s = value.trim();
+        int length = s.length();
+        if(length < 3 || s.charAt(0) != 'P'){
+            return null;
+        }
+        long seconds = 0;
+        long nanos = 0;
+        boolean time = false;
+        boolean any = false;
+        int i = 1;
+        while(i < length){
+            char c = s.charAt(i);
+            if(c == 'T'){
+                if(time){
+                    return null;
+                }
+                time = true;
+                i++;
+                continue;
+            }
+            long whole = 0;
+            int start = i;
+            while(i < length && isDigit(s.charAt(i))){
+                whole = whole * 10 + (s.charAt(i++) - '0');
+            }
+            long fraction = 0;
+            if(i < length && (s.charAt(i) == '.' || s.charAt(i) == ',')){
+                i++;
+                long scale = 100_000_000L;
+                while(i < length && isDigit(s.charAt(i))){
+                    fraction += (s.charAt(i++) - '0') * scale;
+                    scale /= 10;
+                }
+            }
+            if(i == start || i >= length){
+                return null;
+            }
+            long unit = unit(s.charAt(i++), time);
+            if(unit < 0){
+                return null;
+            }
+            any = true;
+            seconds += whole * unit;
+            nanos += fraction * unit;
+        }
+        return any ? Duration.ofSeconds(seconds, nanos) : null;
+    }
+
+    /**
+     * The length of a duration unit in seconds.
+     */
+    private static long unit(char designator, boolean time){
+        if(time){
+            switch(designator){
+                case 'H':
+                    return 3600L;
+                case 'M':
+                    return 60L;
+                case 'S':
+                    return 1L;
+                default:
+                    return -1L;
+            }
+        }
+        switch(designator){
+            case 'Y':
+                return 365L * SECONDS_PER_DAY;
+            case 'M':
+                return 30L * SECONDS_PER_DAY;
+            case 'W':
+                return 7L * SECONDS_PER_DAY;
+            case 'D':
+                return SECONDS_PER_DAY;
+            default:
+                return -1L;
+        }
+    }
+
+    @Nullable
+    private static LocalDate week(String s, int year, int length){
+        if(length != 8 && length != 11 || !isDigits(s, 6, 8)){
+            return null;
+        }
+        LocalDate monday = LocalDate.of(year, 1, 4)
+                .with(IsoFields.WEEK_OF_WEEK_BASED_YEAR, digits(s, 6, 8))
+                .with(DayOfWeek.MONDAY);
+        if(length == 8){
+            return monday;
+        }
+        return s.regionMatches(8, "-WE", 0, 3) ? monday.with(DayOfWeek.SATURDAY) : null;
+    }
+
+    @Nullable
+    private static LocalDate season(String s, int year){
+        switch(s.substring(5)){
+            case "SP":
+                return LocalDate.of(year, 3, 1);
+            case "SU":
+                return LocalDate.of(year, 6, 1);
+            case "FA":
+                return LocalDate.of(year, 9, 1);
+            case "WI":
+                return LocalDate.of(year, 12, 1);
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigits(String s, int start, int end){
+        for(int i = start; i < end; i++){
+            if(!isDigit(s.charAt(i))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isX(String s, int start, int end){
+        for(int i = start; i < end; i++){
+            if(s.charAt(i) != 'X'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(String s, int start, int end){
+        int value = 0;
+        for(int i = start; i < end; i++){
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+}
@@ -26,17 +26,30 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- *  A class for converting between different concrete types.
+ *  A class for converting between different concrete types. Strings in the AMAZON.DATE,
+ *  AMAZON.TIME and AMAZON.DURATION formats convert to LocalDate, LocalTime and Duration
+ *  (see {@link AmazonDates}).
  */
 @ThreadSafe
 @Singleton
@@ -44,9 +57,20 @@ public class Coercion {
     private static final Logger LOGGER = Logger.getLogger(Coercion.class.getCanonicalName());
     private static final ThreadLocal<String> DATE_OVERRIDE = new ThreadLocal<>();
     private static final Converter<Object, Object> PASSTHROUGH = source -> source;
+    private static final Converter<Object, Object> TO_STRING = source -> source == null ? null : source.toString();
 
     private final Map<Key, Converter> coercions = new ConcurrentHashMap<>();
+    /**
+     * Resolved conversions, by source class and then requested destination class.
+     */
+    private final Map<Class<?>, Map<Class<?>, Converter<Object, ?>>> plans = new ConcurrentHashMap<>();
     private static final String DATE_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    /**
+     * SimpleDateFormat pattern letters that DateTimeFormatter reads differently. Patterns with these
+     * are always handled by SimpleDateFormat.
+     */
+    private static final String INCOMPATIBLE_PATTERN_LETTERS = "uwWFYS";
+    private static final Map<String, Optional<DateTimeFormatter>> FORMATTERS = new ConcurrentHashMap<>();
 
     { // Instance init
         Key key = new Key(String.class, Integer.class);
@@ -116,12 +140,7 @@ public class Coercion {
                 if (source == null || source.trim().isEmpty()) {
                     return null;
                 } else {
-                    try {
-                        //Create a new one every time for thread safety
-                        return new SimpleDateFormat(getDatePattern()).parse(source);
-                    } catch (ParseException e) {
-                        return null;
-                    }
+                    return parseDate(source, getDatePattern());
                 }
             }
         });
@@ -132,12 +151,15 @@ public class Coercion {
                 if (source == null) {
                     return null;
                 } else {
-                    //Create a new one every time for thread safety
-                    return new SimpleDateFormat(getDatePattern()).format(source);
+                    return formatDate(source, getDatePattern());
                 }
             }
         });
 
+        coercions.put(new Key(String.class, LocalDate.class), (Converter<String, LocalDate>) AmazonDates::parseDate);
+        coercions.put(new Key(String.class, LocalTime.class), (Converter<String, LocalTime>) AmazonDates::parseTime);
+        coercions.put(new Key(String.class, Duration.class), (Converter<String, Duration>) AmazonDates::parseDuration);
+
         coercions.put(new Key(Date.class, Long.class), new Converter<Date, Long>() {
             @Override
             public Long convert(Date source) {
@@ -221,11 +243,21 @@ public class Coercion {
     }
 
 
+    /**
+     * Adds or replaces a converter. This clears the cached conversion plans, so handles returned by
+     * {@link #converterFor(Class, Class)} before this call should be discarded.
+     * @param source The source type.
+     * @param destination The destination type.
+     * @param converter The converter.
+     * @param <S> The source type.
+     * @param <D> The destination type.
+     */
     @SuppressWarnings("unused")
     public <S,D> void addConverter(Class<S> source, Class<D> destination, Converter<S,D> converter){
         if(this.coercions.put(new Key(source, destination), converter) != null){
             LOGGER.warning("Replacing coercion from "+source.getCanonicalName() +" to " + destination.getCanonicalName());
         }
+        this.plans.clear();
     }
 
     /**
@@ -256,37 +288,60 @@ public class Coercion {
     @SuppressWarnings({"unchecked", "WeakerAccess"})
     public <S,D> D coerce(@Nonnull Class<?> sourceClass, @Nullable S source, @Nonnull Class<D> destination){
         checkNotNull(destination, "You must provide a target class");
-        destination = (Class<D>) noPrimitives(destination);
-        D value;
-        Converter<S, D> convert = null;
-        boolean hasConverter = source != null && (convert = coercions.get(new Key(sourceClass, destination))) != null;
-
-        if(source == null || destination.isAssignableFrom(sourceClass)){
-            return (D) source;
-        } else if(!hasConverter && sourceClass.isAssignableFrom(destination)) {
-            value = (D) source;
-        }else if(destination.isEnum()) {
-            if(source instanceof Number) {
-                return destination.getEnumConstants()[((Number)source).intValue()];
-            } else {
-                for(D d : destination.getEnumConstants()){
-                    if(d.toString().equalsIgnoreCase(source.toString())) {
-                        return d;
-                    }
+        if(source == null){
+            return null;
+        }
+        return ((Converter<S, D>) converterFor(sourceClass, destination)).convert(source);
+    }
+
+    /**
+     * Returns a reusable handle that converts values of exactly <code>sourceClass</code> to the destination
+     * type. The conversion is resolved once per pair of types and cached, so callers that see the same
+     * types repeatedly can keep the handle and skip the lookup entirely. The handle returns null for a
+     * null source.
+     * @param sourceClass The class to treat the source as.
+     * @param destination The destination type.
+     * @param <D> The destination type.
+     * @return A Converter for the pair of types.
+     */
+    @SuppressWarnings({"unchecked", "WeakerAccess"})
+    public <D> Converter<Object, D> converterFor(@Nonnull Class<?> sourceClass, @Nonnull Class<D> destination){
+        checkNotNull(sourceClass, "You must provide a source class");
+        checkNotNull(destination, "You must provide a target class");
+        Map<Class<?>, Converter<Object, ?>> row = plans.get(sourceClass);
+        if(row == null){
+            row = plans.computeIfAbsent(sourceClass, c -> new ConcurrentHashMap<>());
+        }
+        Converter<Object, ?> plan = row.get(destination);
+        if(plan == null){
+            plan = row.computeIfAbsent(destination, d -> plan(sourceClass, d));
+        }
+        return (Converter<Object, D>) plan;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Converter<Object, ?> plan(Class<?> sourceClass, Class<?> requested){
+        Class<?> destination = noPrimitives(requested);
+        Converter<Object, Object> convert = coercions.get(new Key(sourceClass, destination));
+        if(destination.isAssignableFrom(sourceClass)
+                || (convert == null && sourceClass.isAssignableFrom(destination))){
+            return PASSTHROUGH;
+        } else if(destination.isEnum()) {
+            return new EnumConverter(destination, Number.class.isAssignableFrom(sourceClass));
+        } else if(String.class.equals(destination) && convert == null){
+            return TO_STRING;
+        } else if(sourceClass.isAssignableFrom(destination)){
+            return PASSTHROUGH;
+        } else if(convert == null){
+            String message = "Could not find a converter to go from "+sourceClass+" to "+destination;
+            return source -> {
+                if(source == null){
+                    return null;
                 }
-                throw new RuntimeException("Couldn't find enum value for "+source+" on type "+destination.getCanonicalName());
-            }
-        } else {
-            if(String.class.equals(destination) && convert == null){
-                return (D) source.toString();
-            }
-            if(sourceClass.isAssignableFrom(destination)){
-                return (D) source;
-            }
-            checkNotNull(convert, "Could not find a converter to go from "+sourceClass+" to "+destination);
-            return convert.convert(source);
+                throw new NullPointerException(message);
+            };
         }
-        return value;
+        return source -> source == null ? null : convert.convert(source);
     }
 
     private static Class<?> noPrimitives(Class<?> destination) {
@@ -318,10 +373,74 @@ public class Coercion {
     }
 
     private static String getDatePattern(){
-        if(DATE_OVERRIDE.get() != null){
-            return DATE_OVERRIDE.get();
-        } else {
-            return DATE_PATTERN;
+        String override = DATE_OVERRIDE.get();
+        return override != null ? override : DATE_PATTERN;
+    }
+
+    /**
+     * Parses a date with the cached formatter for the pattern, falling back to a (lenient)
+     * SimpleDateFormat for input or patterns the formatter doesn't accept.
+     */
+    @Nullable
+    private static Date parseDate(String source, String pattern){
+        DateTimeFormatter formatter = formatterFor(pattern);
+        if(formatter != null){
+            try {
+                TemporalAccessor parsed = formatter.parse(source);
+                LocalDate date = parsed.query(TemporalQueries.localDate());
+                if(date != null){
+                    LocalTime time = parsed.query(TemporalQueries.localTime());
+                    ZoneId zone = parsed.query(TemporalQueries.zone());
+                    return Date.from(date.atTime(time == null ? LocalTime.MIDNIGHT : time)
+                            .atZone(zone == null ? ZoneId.systemDefault() : zone)
+                            .toInstant());
+                }
+            } catch (DateTimeException e) {
+                // Fall through to the lenient parser.
+            }
+        }
+        try {
+            return new SimpleDateFormat(pattern).parse(source);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static String formatDate(Date source, String pattern){
+        DateTimeFormatter formatter = formatterFor(pattern);
+        if(formatter != null){
+            return formatter.format(source.toInstant().atZone(ZoneId.systemDefault()));
+        }
+        return new SimpleDateFormat(pattern).format(source);
+    }
+
+    /**
+     * Returns the cached, immutable formatter for a SimpleDateFormat pattern, or null if the pattern
+     * uses letters that mean something different to DateTimeFormatter.
+     */
+    @Nullable
+    private static DateTimeFormatter formatterFor(String pattern){
+        Optional<DateTimeFormatter> formatter = FORMATTERS.get(pattern);
+        if(formatter == null){
+            formatter = FORMATTERS.computeIfAbsent(pattern, Coercion::createFormatter);
+        }
+        return formatter.orElse(null);
+    }
+
+    private static Optional<DateTimeFormatter> createFormatter(String pattern){
+        boolean quoted = false;
+        for(int i = 0; i < pattern.length(); i++){
+            char c = pattern.charAt(i);
+            if(c == '\''){
+                quoted = !quoted;
+            } else if(!quoted && INCOMPATIBLE_PATTERN_LETTERS.indexOf(c) >= 0){
+                return Optional.empty();
+            }
+        }
+        try {
+            return Optional.of(DateTimeFormatter.ofPattern(pattern));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
         }
     }
 
@@ -343,10 +462,47 @@ public class Coercion {
      * @param <S> Source type
      * @param <D> DestinationType
      */
-    private interface Converter<S,D> {
+    @FunctionalInterface
+    public interface Converter<S,D> {
         D convert(@Nullable S source);
     }
 
+    /**
+     * Converts to an enum, by ordinal from a Number, or by a case insensitive match on
+     * the constant's toString() from anything else.
+     */
+    private static class EnumConverter implements Converter<Object, Object> {
+        private final Class<?> type;
+        private final Object[] constants;
+        private final boolean ordinal;
+        private final Map<String, Object> names;
+
+        private EnumConverter(Class<?> type, boolean ordinal) {
+            this.type = type;
+            this.constants = type.getEnumConstants();
+            this.ordinal = ordinal;
+            HashMap<String, Object> names = new HashMap<>(constants.length * 2);
+            for (Object constant : constants) {
+                names.putIfAbsent(constant.toString().toLowerCase(Locale.ROOT), constant);
+            }
+            this.names = names;
+        }
+
+        @Override
+        public Object convert(@Nullable Object source) {
+            if (source == null) {
+                return null;
+            } else if (ordinal) {
+                return constants[((Number) source).intValue()];
+            }
+            Object value = names.get(source.toString().toLowerCase(Locale.ROOT));
+            if (value == null) {
+                throw new RuntimeException("Couldn't find enum value for "+source+" on type "+type.getCanonicalName());
+            }
+            return value;
+        }
+    }
+
     /**
      * A key to look up converters with
      */
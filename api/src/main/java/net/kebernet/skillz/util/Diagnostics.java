@@ -0,0 +1,170 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.util;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A level-guarded, sampled channel for per-request diagnostic logging.
+ * <p>
+ *     A request is traced when {@link #begin(String)} is called with its trace ID (the Alexa request
+ *     ID), the logger is enabled at FINE, and the request is picked by sampling. Only one in
+ *     {@link #SAMPLE_RATE_PROPERTY} requests is picked, and the default is every request. Messages
+ *     are logged at FINE, prefixed with the trace ID.
+ * </p>
+ * <p>
+ *     Messages are built lazily, so nothing is allocated when a request isn't traced. On hot paths,
+ *     use {@link #trace(Object, Function)} with a non-capturing lambda, or check
+ *     {@link #isTracing()} first, because a capturing Supplier is allocated at the call site.
+ * </p>
+ * <p>
+ *     The trace belongs to the thread that began it. Wrap work handed to another thread with
+ *     {@link #propagate(Supplier)} or {@link #propagate(Function)} to continue the trace there.
+ * </p>
+ */
+public final class Diagnostics {
+    /**
+     * The system property with the sampling rate: one in this many requests is traced.
+     */
+    public static final String SAMPLE_RATE_PROPERTY = "net.kebernet.skillz.diagnostics.sampleRate";
+    private static final int SAMPLE_RATE = Math.max(1, Integer.getInteger(SAMPLE_RATE_PROPERTY, 1));
+    private static final ThreadLocal<Trace> TRACE = ThreadLocal.withInitial(Trace::new);
+
+    private final Logger logger;
+
+    private Diagnostics(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Creates a diagnostic channel logging to the logger for a class.
+     * @param type The class.
+     * @return A Diagnostics instance.
+     */
+    public static Diagnostics forClass(Class<?> type) {
+        return new Diagnostics(Logger.getLogger(type.getCanonicalName()));
+    }
+
+    /**
+     * Starts tracing a request on the current thread, if it is sampled.
+     * @param traceId The ID to prefix messages with.
+     */
+    public void begin(@Nullable String traceId) {
+        Trace trace = TRACE.get();
+        trace.traceId = traceId;
+        trace.sampled = logger.isLoggable(Level.FINE) &&
+                (SAMPLE_RATE == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0);
+    }
+
+    /**
+     * Stops tracing on the current thread.
+     */
+    public void end() {
+        Trace trace = TRACE.get();
+        trace.traceId = null;
+        trace.sampled = false;
+    }
+
+    /**
+     * Indicates whether the request on the current thread is being traced.
+     * @return true if messages will be logged.
+     */
+    public boolean isTracing() {
+        return logger.isLoggable(Level.FINE) && TRACE.get().sampled;
+    }
+
+    /**
+     * Logs a message if the current request is being traced.
+     * @param message A supplier for the message.
+     */
+    public void trace(Supplier<String> message) {
+        if (isTracing()) {
+            log(message.get());
+        }
+    }
+
+    /**
+     * Logs a message built from a value if the current request is being traced.
+     * @param value The value.
+     * @param message A function building the message from the value.
+     * @param <T> The value type.
+     */
+    public <T> void trace(T value, Function<T, String> message) {
+        if (isTracing()) {
+            log(message.apply(value));
+        }
+    }
+
+    /**
+     * Wraps a task so it continues the current thread's trace on whichever thread runs it.
+     * @param task The task.
+     * @param <T> The result type.
+     * @return The wrapped task, or the task itself if the current request isn't being traced.
+     */
+    public <T> Supplier<T> propagate(Supplier<T> task) {
+        if (!isTracing()) {
+            return task;
+        }
+        String traceId = TRACE.get().traceId;
+        return () -> continueTrace(traceId, task);
+    }
+
+    /**
+     * Wraps a function so it continues the current thread's trace on whichever thread applies it.
+     * @param function The function.
+     * @param <T> The argument type.
+     * @param <R> The result type.
+     * @return The wrapped function, or the function itself if the current request isn't being traced.
+     */
+    public <T, R> Function<T, R> propagate(Function<T, R> function) {
+        if (!isTracing()) {
+            return function;
+        }
+        String traceId = TRACE.get().traceId;
+        return t -> continueTrace(traceId, () -> function.apply(t));
+    }
+
+    private static <T> T continueTrace(String traceId, Supplier<T> task) {
+        Trace trace = TRACE.get();
+        String previousId = trace.traceId;
+        boolean previouslySampled = trace.sampled;
+        trace.traceId = traceId;
+        trace.sampled = true;
+        try {
+            return task.get();
+        } finally {
+            trace.traceId = previousId;
+            trace.sampled = previouslySampled;
+        }
+    }
+
+    private void log(String message) {
+        logger.fine("[" + TRACE.get().traceId + "] " + message);
+    }
+
+    /**
+     * The mutable, per-thread trace state.
+     */
+    private static class Trace {
+        String traceId;
+        boolean sampled;
+    }
+}
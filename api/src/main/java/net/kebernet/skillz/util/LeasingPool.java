@@ -0,0 +1,353 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.util;
+
+import net.kebernet.skillz.SkillzException;
+import net.kebernet.skillz.TypeFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A bounded, non-blocking object pool. Objects are created lazily up to the maximum size,
+ * and idle objects are kept in a striped array that threads claim and release with CAS
+ * operations, starting from a slot chosen by thread so they rarely collide. Only a
+ * {@link #checkout()} on an exhausted pool waits, and it does so without holding a lock.
+ * <p>
+ *     Use {@link #lease()} with try-with-resources so the object always goes back to the pool.
+ * </p>
+ */
+public class LeasingPool<T> {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final TypeFactory factory;
+    private final Class<T> type;
+    private final AtomicReferenceArray<T> idle;
+    private final int maxSize;
+    private final long waitTimeoutNanos;
+    private final AtomicInteger created = new AtomicInteger();
+    private final LongAdder inUse = new LongAdder();
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder exhaustions = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * Constructor
+     *
+     * @param factory TypeFactory to create pooled objects.
+     * @param type Type of object in the pool
+     * @param maxSize The most objects the pool will create
+     * @param waitTimeout time to wait during checkout
+     * @param waitTimeoutUnit time unit to wait during checkout
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LeasingPool(TypeFactory factory, Class<T> type, int maxSize, long waitTimeout, TimeUnit waitTimeoutUnit) {
+        checkArgument(maxSize > 0, "maxSize must be positive");
+        this.factory = checkNotNull(factory);
+        this.type = checkNotNull(type);
+        this.maxSize = maxSize;
+        this.idle = new AtomicReferenceArray<>(maxSize);
+        this.waitTimeoutNanos = waitTimeoutUnit.toNanos(waitTimeout);
+    }
+
+    /**
+     * Constructor with a default wait time of 15 seconds.
+     * @param factory Factory to create objects
+     * @param type Type of pool
+     * @param maxSize The most objects the pool will create
+     */
+    public LeasingPool(TypeFactory factory, Class<T> type, int maxSize) {
+        this(factory, type, maxSize, 15, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Checks an object out of the pool without waiting.
+     * @return An object from the pool, or null if the pool is exhausted.
+     */
+    @Nullable
+    public T tryCheckout() {
+        T value = claimIdle();
+        if (value == null) {
+            value = createIfUnderLimit();
+        }
+        if (value == null) {
+            exhaustions.increment();
+            return null;
+        }
+        checkouts.increment();
+        inUse.increment();
+        return value;
+    }
+
+    /**
+     * Checks an object out of the pool, waiting up to the timeout if it is exhausted.
+     * @return Object from the pool.
+     * @throws SkillzException if the timeout elapses or the thread is interrupted.
+     */
+    public T checkout() {
+        T value = tryCheckout();
+        if (value != null) {
+            return value;
+        }
+        waits.increment();
+        long start = System.nanoTime();
+        long parkNanos = 1000;
+        try {
+            while (true) {
+                long waited = System.nanoTime() - start;
+                if (waited >= waitTimeoutNanos) {
+                    throw new SkillzException("Pool of " + type.getCanonicalName() + " exhausted after waiting " +
+                            TimeUnit.NANOSECONDS.toMillis(waited) + "ms");
+                }
+                LockSupport.parkNanos(this, Math.min(parkNanos, waitTimeoutNanos - waited));
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new SkillzException("Interrupted waiting for pool of " + type.getCanonicalName());
+                }
+                value = claimIdle();
+                if (value == null) {
+                    // A failed create elsewhere may have left room under the limit.
+                    value = createIfUnderLimit();
+                }
+                if (value != null) {
+                    checkouts.increment();
+                    inUse.increment();
+                    return value;
+                }
+                parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            }
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns an object to the pool.
+     * @param value Value to return to the pool.
+     * @throws SkillzException if the pool is already full.
+     */
+    public void checkin(T value) {
+        checkNotNull(value);
+        int start = startIndex();
+        for (int i = 0; i < maxSize; i++) {
+            int index = (start + i) % maxSize;
+            if (idle.get(index) == null && idle.compareAndSet(index, null, value)) {
+                inUse.decrement();
+                return;
+            }
+        }
+        throw new SkillzException("Attempt to check into a full pool of " + type.getCanonicalName());
+    }
+
+    /**
+     * Checks an object out of the pool as a Lease that returns it when closed.
+     * @return A lease on an object from the pool.
+     * @throws SkillzException if the timeout elapses.
+     */
+    public Lease<T> lease() {
+        return new Lease<>(this, checkout());
+    }
+
+    /**
+     * Takes a snapshot of the counters for the pool.
+     * @return The current Stats.
+     */
+    public Stats getStats() {
+        return new Stats(maxSize, created.get(), inUse.sum(), checkouts.sum(), exhaustions.sum(),
+                waits.sum(), waitNanos.sum());
+    }
+
+    @Nullable
+    private T claimIdle() {
+        int start = startIndex();
+        for (int i = 0; i < maxSize; i++) {
+            int index = (start + i) % maxSize;
+            T value = idle.get(index);
+            if (value != null && idle.compareAndSet(index, value, null)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private T createIfUnderLimit() {
+        int count;
+        do {
+            count = created.get();
+            if (count >= maxSize) {
+                return null;
+            }
+        } while (!created.compareAndSet(count, count + 1));
+        try {
+            return factory.create(type);
+        } catch (RuntimeException e) {
+            created.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private int startIndex() {
+        return (int) (Thread.currentThread().getId() % maxSize);
+    }
+
+    /**
+     * An object checked out of a LeasingPool. Closing the lease checks the object back in,
+     * so use it with try-with-resources.
+     */
+    public static final class Lease<T> implements AutoCloseable {
+        private final LeasingPool<T> pool;
+        private final T value;
+        private boolean closed;
+
+        private Lease(LeasingPool<T> pool, T value) {
+            this.pool = pool;
+            this.value = value;
+        }
+
+        /**
+         * The leased object.
+         * @return The object.
+         */
+        public T get() {
+            if (closed) {
+                throw new IllegalStateException("Lease has been closed.");
+            }
+            return value;
+        }
+
+        /**
+         * Returns the object to the pool. Calling this more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.checkin(value);
+            }
+        }
+    }
+
+    /**
+     * A point in time snapshot of the pool counters.
+     */
+    public static final class Stats {
+        private final int maxSize;
+        private final int size;
+        private final long inUse;
+        private final long checkouts;
+        private final long exhaustions;
+        private final long waits;
+        private final long waitNanos;
+
+        private Stats(int maxSize, int size, long inUse, long checkouts, long exhaustions, long waits, long waitNanos) {
+            this.maxSize = maxSize;
+            this.size = size;
+            this.inUse = inUse;
+            this.checkouts = checkouts;
+            this.exhaustions = exhaustions;
+            this.waits = waits;
+            this.waitNanos = waitNanos;
+        }
+
+        /**
+         * The most objects the pool will create.
+         * @return The maximum size.
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * The number of objects the pool has created so far.
+         * @return The size.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * The number of objects currently checked out.
+         * @return The in use count.
+         */
+        public long getInUse() {
+            return inUse;
+        }
+
+        /**
+         * The fraction of the maximum size currently checked out.
+         * @return A value from 0 to 1.
+         */
+        public double getUtilization() {
+            return (double) inUse / maxSize;
+        }
+
+        /**
+         * The total number of successful checkouts.
+         * @return The checkout count.
+         */
+        public long getCheckouts() {
+            return checkouts;
+        }
+
+        /**
+         * The number of times a checkout found the pool exhausted.
+         * @return The exhaustion count.
+         */
+        public long getExhaustions() {
+            return exhaustions;
+        }
+
+        /**
+         * The number of checkouts that had to wait for an object.
+         * @return The wait count.
+         */
+        public long getWaits() {
+            return waits;
+        }
+
+        /**
+         * The total time spent waiting for objects.
+         * @param unit The unit to return.
+         * @return The total wait time.
+         */
+        public long getWaitTime(TimeUnit unit) {
+            return unit.convert(waitNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "maxSize=" + maxSize +
+                    ", size=" + size +
+                    ", inUse=" + inUse +
+                    ", checkouts=" + checkouts +
+                    ", exhaustions=" + exhaustions +
+                    ", waits=" + waits +
+                    ", waitNanos=" + waitNanos +
+                    '}';
+        }
+    }
+}
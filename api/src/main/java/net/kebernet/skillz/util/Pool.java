@@ -23,7 +23,9 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A really stupid simple fixed pool implementation.
+ * @deprecated Use {@link LeasingPool}, which grows lazily and doesn't block on the fast path.
  */
+@Deprecated
 public class Pool<T> {
 
     private final LinkedBlockingQueue<T> queue;
@@ -15,11 +15,16 @@
  */
 package net.kebernet.skillz;
 
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletRequest;
 import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
 import net.kebernet.skillz.builder.PlainTextOutputBuilder;
 import org.junit.Test;
 
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicInteger;
+
 
 import static org.junit.Assert.*;
 
@@ -70,4 +75,69 @@ public class FormatterMappingsTest {
         } );
         mappings.findMappingFunction(String.class).apply("bar", null, null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void hierarchy() throws Exception {
+        FormatterMappings mappings = new FormatterMappings();
+        mappings.addMappingFunction(Number.class, (o, request, session) -> SpeechletResponse.newTellResponse(
+                PlainTextOutputBuilder.withText("number").build()));
+        mappings.addMappingFunction(CharSequence.class, (o, request, session) -> SpeechletResponse.newTellResponse(
+                PlainTextOutputBuilder.withText("chars").build()));
+        assertEquals("number", text(mappings.findMappingFunction(Integer.class).apply(1, null, null)));
+        assertEquals("chars", text(mappings.findMappingFunction(StringBuilder.class).apply("bar", null, null)));
+
+        mappings.addMappingFunction(Object.class, (o, request, session) -> SpeechletResponse.newTellResponse(
+                PlainTextOutputBuilder.withText("object").build()));
+        assertEquals("object", text(mappings.findMappingFunction(Boolean.class).apply(true, null, null)));
+        assertEquals("number", text(mappings.findMappingFunction(Long.class).apply(1L, null, null)));
+
+        mappings.addMappingFunction(Integer.class, (o, request, session) -> SpeechletResponse.newTellResponse(
+                PlainTextOutputBuilder.withText("integer").build()));
+        assertEquals("integer", text(mappings.findMappingFunction(Integer.class).apply(1, null, null)));
+    }
+
+    @Test
+    public void singletonInstancesAreCached() throws Exception {
+        FormatterMappings mappings = new FormatterMappings();
+        mappings.addMappingFunctionProvider(String.class, SingletonFormatter::new);
+        mappings.addMappingFunctionProvider(Integer.class, PrototypeFormatter::new);
+        assertSame(mappings.findMappingFunction(String.class), mappings.findMappingFunction(String.class));
+        assertNotSame(mappings.findMappingFunction(Integer.class), mappings.findMappingFunction(Integer.class));
+
+        mappings.setCacheSingletons(false);
+        assertNotSame(mappings.findMappingFunction(String.class), mappings.findMappingFunction(String.class));
+    }
+
+    @Test
+    public void lookupsRequestOneFormatterEach() throws Exception {
+        FormatterMappings mappings = new FormatterMappings();
+        AtomicInteger created = new AtomicInteger();
+        mappings.addMappingFunctionProvider(Integer.class, () -> {
+            created.incrementAndGet();
+            return new PrototypeFormatter();
+        });
+        mappings.findMappingFunction(Integer.class);
+        assertEquals(1, created.get());
+        mappings.findMappingFunction(Integer.class);
+        assertEquals(2, created.get());
+    }
+
+    private static String text(Object response) {
+        return ((PlainTextOutputSpeech) ((SpeechletResponse) response).getOutputSpeech()).getText();
+    }
+
+    public static class PrototypeFormatter implements Formatter<Integer> {
+        @Override
+        public SpeechletResponse apply(Integer i, SpeechletRequest request, Session session) {
+            return null;
+        }
+    }
+
+    @Singleton
+    public static class SingletonFormatter implements Formatter<String> {
+        @Override
+        public SpeechletResponse apply(String s, SpeechletRequest request, Session session) {
+            return null;
+        }
+    }
+}
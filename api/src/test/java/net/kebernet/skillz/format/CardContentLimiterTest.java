@@ -0,0 +1,54 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CardContentLimiterTest {
+
+    @Test
+    public void shortContent() {
+        String content = "nospaces";
+        assertSame(content, CardContentLimiter.limit(content));
+        assertNull(CardContentLimiter.limit(""));
+        assertNull(CardContentLimiter.limit(null));
+    }
+
+    @Test
+    public void wordBoundary() {
+        assertEquals("one two...", CardContentLimiter.limit("one two three", 12));
+        assertEquals("one two...", CardContentLimiter.limit("one two\nthree", 12));
+        assertEquals("one two...", CardContentLimiter.limit("one two  three", 10));
+        assertEquals("onetwot...", CardContentLimiter.limit("onetwothree", 10));
+    }
+
+    @Test
+    public void cardLimit() {
+        String line = Strings.repeat("word ", 20) + "\n";
+        String content = Strings.repeat(line, 200);
+        String limited = CardContentLimiter.limit(content);
+        assertTrue(limited.length() <= CardContentLimiter.MAX_CARD_LENGTH);
+        assertTrue(limited.endsWith("word..."));
+        assertTrue(content.startsWith(limited.substring(0, limited.length() - 3)));
+        assertEquals(Strings.repeat("x", 7997) + "...", CardContentLimiter.limit(Strings.repeat("x", 9000)));
+    }
+}
@@ -18,8 +18,13 @@ package net.kebernet.skillz.format;
 import com.amazon.speech.speechlet.Application;
 import com.amazon.speech.speechlet.Session;
 import com.amazon.speech.speechlet.SpeechletRequest;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.amazon.speech.ui.OutputSpeech;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import com.amazon.speech.ui.SimpleCard;
 import com.amazon.speech.speechlet.User;
 import com.amazon.speech.ui.SsmlOutputSpeech;
+import net.kebernet.skillz.builder.PlainTextOutputBuilder;
 import org.junit.Test;
 
 import java.util.HashMap;
@@ -48,4 +53,80 @@ public class ConstantBundleTest {
         assertEquals("<speech>\n    <s>Hello, world!</s>\n</speech>", ((SsmlOutputSpeech)bundle.createOutputSpeech(null, mock(SpeechletRequest.class), SESSION)).getSsml().trim());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testConstantResponse(){
+        ConstantBundle bundle = new ConstantBundle("/constant", "en");
+        assertSame(bundle.createOutputSpeech(null, mock(SpeechletRequest.class), SESSION),
+                bundle.createOutputSpeech("other", mock(SpeechletRequest.class), SESSION));
+        AbstractBundleFormatter<Object> formatter = new HelpFormatter(bundle);
+        SpeechletResponse response = formatter.apply(null, mock(SpeechletRequest.class), SESSION);
+        assertSame(response, formatter.apply("other", mock(SpeechletRequest.class), SESSION));
+        assertEquals("Help", ((SimpleCard) response.getCard()).getTitle());
+        assertNotNull(ResponseTemplate.lookup(response));
+        assertSame(response, new HelpFormatter(bundle).apply(null, mock(SpeechletRequest.class), SESSION));
+    }
+
+    @Test
+    public void constantResponsesAreKeptPerBundle(){
+        SpeechletResponse english = new HelpFormatter(new TextBundle("Help."))
+                .apply(null, mock(SpeechletRequest.class), SESSION);
+        SpeechletResponse german = new HelpFormatter(new TextBundle("Hilfe."))
+                .apply(null, mock(SpeechletRequest.class), SESSION);
+        assertEquals("Help.", ((PlainTextOutputSpeech) english.getOutputSpeech()).getText());
+        assertEquals("Hilfe.", ((PlainTextOutputSpeech) german.getOutputSpeech()).getText());
+    }
+
+    private static class TextBundle implements Bundle {
+        private final OutputSpeech speech;
+
+        TextBundle(String text) {
+            this.speech = PlainTextOutputBuilder.withText(text).build();
+        }
+
+        @Override
+        public OutputSpeech createOutputSpeech(Object response, SpeechletRequest request, Session session) {
+            return speech;
+        }
+
+        @Override
+        public String createCardContent(Object response, SpeechletRequest request, Session session) {
+            return null;
+        }
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static class HelpFormatter extends AbstractBundleFormatter<Object> {
+        HelpFormatter(Bundle bundle) {
+            super(bundle, null);
+        }
+
+        @Override
+        protected boolean isConstantResponse() {
+            return true;
+        }
+
+        @Override
+        public boolean isAskResponse(Object o, SpeechletRequest request, Session session) {
+            return false;
+        }
+
+        @Override
+        public String getCardTitle(Object o, SpeechletRequest request, Session session) {
+            return "Help";
+        }
+
+        @Override
+        public String getCardLargeImage(Object o, SpeechletRequest request, Session session) {
+            return null;
+        }
+
+        @Override
+        public String getCardSmallImage(Object o, SpeechletRequest request, Session session) {
+            return null;
+        }
+    }
+}
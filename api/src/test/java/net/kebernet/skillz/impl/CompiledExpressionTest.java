@@ -0,0 +1,104 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.User;
+import net.kebernet.skillz.SkillzException;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledExpressionTest {
+
+    private final IntentRequest request = IntentRequest.builder()
+            .withRequestId("request-id")
+            .withLocale(Locale.US)
+            .build();
+    private final Session session = Session.builder()
+            .withSessionId("session-id")
+            .withUser(User.builder().withUserId("user-id").build())
+            .build();
+
+    @Test
+    public void propertyPaths() throws Exception {
+        CompiledExpression userId = new CompiledExpression("session.user.userId");
+        assertTrue(userId.isPropertyPath());
+        assertEquals("user-id", userId.getValue(request, session, null));
+        assertEquals(Locale.US, new CompiledExpression("request.locale").getValue(request, session, null));
+        assertEquals(request, new CompiledExpression("request").getValue(request, session, null));
+    }
+
+    @Test
+    public void mapValues() throws Exception {
+        session.setAttribute("color", "blue");
+        CompiledExpression color = new CompiledExpression("session.attributes.color");
+        assertTrue(color.isPropertyPath());
+        assertEquals("blue", color.getValue(request, session, null));
+        assertEquals(1, new CompiledExpression("session.attributes.size").getValue(request, session, null));
+    }
+
+    @Test
+    public void otherExpressionsUseOgnl() throws Exception {
+        CompiledExpression expression = new CompiledExpression("request.requestId + '/' + session.sessionId");
+        assertFalse(expression.isPropertyPath());
+        assertEquals("request-id/session-id", expression.getValue(request, session, null));
+    }
+
+    @Test
+    public void unknownPropertiesFallBackToOgnl() throws Exception {
+        CompiledExpression expression = new CompiledExpression("request.missing");
+        assertTrue(expression.isPropertyPath());
+        try {
+            expression.getValue(request, session, null);
+        } catch (SkillzException e) {
+            assertTrue(e.getMessage().startsWith("Failed to evaluate request.missing"));
+            return;
+        }
+        throw new AssertionError("Expected a SkillzException");
+    }
+
+    @Test
+    public void getterExceptionsAreNotRetried() throws Exception {
+        Failing failing = new Failing();
+        session.setAttribute("failing", failing);
+        CompiledExpression expression = new CompiledExpression("session.attributes.failing.value");
+        assertTrue(expression.isPropertyPath());
+        try {
+            expression.getValue(request, session, null);
+        } catch (SkillzException e) {
+            assertTrue(e.getMessage().startsWith("Failed to evaluate session.attributes.failing.value"));
+            assertEquals("Backend unavailable", e.getCause().getMessage());
+            assertEquals(1, failing.calls);
+            return;
+        }
+        throw new AssertionError("Expected a SkillzException");
+    }
+
+    public static class Failing {
+        int calls;
+
+        public String getValue() {
+            calls++;
+            throw new IllegalStateException("Backend unavailable");
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.Sdk;
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import net.kebernet.skillz.FormatterMappings;
+import net.kebernet.skillz.SkillzMetrics;
+import net.kebernet.skillz.annotation.Intent;
+import net.kebernet.skillz.annotation.Launched;
+import net.kebernet.skillz.annotation.ResponseFormatter;
+import net.kebernet.skillz.annotation.Skill;
+import net.kebernet.skillz.builder.PlainTextOutputBuilder;
+import net.kebernet.skillz.format.ResponseTemplate;
+import net.kebernet.skillz.util.Formatters;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DynamicServletTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final SpeechletResponse PREPARED = ResponseTemplate.prepare(ServletTestSkill.response("Constant."));
+    private static final Map<String, Object> ATTRIBUTES = ImmutableMap.of("count", 2, "name", "Gracie");
+
+    @BeforeClass
+    public static void disableSignatureCheck() {
+        System.setProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY, "true");
+    }
+
+    @AfterClass
+    public static void enableSignatureCheck() {
+        System.clearProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY);
+    }
+
+    @Test
+    public void preparedResponseIsWrittenFromTemplate() throws Exception {
+        JsonNode written = post(launchRequest());
+        SpeechletResponseEnvelope expected = new SpeechletResponseEnvelope();
+        expected.setVersion(Sdk.VERSION);
+        expected.setResponse(PREPARED);
+        expected.setSessionAttributes(ATTRIBUTES);
+        assertEquals(MAPPER.readTree(expected.toJsonBytes()), written);
+        assertEquals("Gracie", written.get("sessionAttributes").get("name").asText());
+    }
+
+    @Test
+    public void otherResponsesAreSerialized() throws Exception {
+        JsonNode written = post(intentRequest());
+        assertNull(ResponseTemplate.lookup(ServletTestSkill.dynamic(3)));
+        assertEquals("Dynamic 3.", written.get("response").get("outputSpeech").get("text").asText());
+        assertEquals(2, written.get("sessionAttributes").get("count").asInt());
+    }
+
+    @Test
+    public void emptyAttributesAreWritten() throws Exception {
+        JsonNode written = post(launchRequest().replace("\"count\":2,\"name\":\"Gracie\"", ""));
+        assertEquals(0, written.get("sessionAttributes").size());
+        assertEquals("Constant.", written.get("response").get("outputSpeech").get("text").asText());
+    }
+
+    @Test
+    public void completionStagesAreFormattedOnCompletion() throws Exception {
+        JsonNode written = post(intentRequest("future"));
+        assertEquals("Later.", written.get("response").get("outputSpeech").get("text").asText());
+    }
+
+    @Test
+    public void failedCompletionStagesAreErrors() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        DynamicServlet servlet = servlet();
+        List<String> counted = countEvents(servlet);
+        servlet.doPost(request(intentRequest("failed")), response);
+        verify(response).sendError(eq(HttpServletResponse.SC_INTERNAL_SERVER_ERROR), anyString());
+        assertEquals(Collections.singletonList("failed ERROR"), counted);
+    }
+
+    @Test
+    public void badRequestsAreRejected() throws Exception {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        DynamicServlet servlet = servlet();
+        List<String> counted = countEvents(servlet);
+        servlet.doPost(request("{\"version\":\"1.0\"}"), response);
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+        assertEquals(Collections.singletonList("null ERROR"), counted);
+    }
+
+    private static List<String> countEvents(DynamicServlet servlet) {
+        List<String> counted = new ArrayList<>();
+        servlet.getDynamicSpeechlet().setMetrics(new SkillzMetrics() {
+            @Override
+            public void time(String skill, String intent, Stage stage, long nanos) {
+            }
+
+            @Override
+            public void count(String skill, String intent, Event event) {
+                counted.add(intent + " " + event);
+            }
+        });
+        return counted;
+    }
+
+    @Test
+    public void largeBodiesAreRejectedBeforeReading() throws Exception {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContentLength()).thenReturn(RequestBody.MAX_SIZE + 1);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        servlet().doPost(request, response);
+        verify(request, never()).getInputStream();
+        verify(response).sendError(eq(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE), anyString());
+    }
+
+    @Test
+    public void largeStreamedBodiesAreRejected() throws Exception {
+        char[] padding = new char[RequestBody.MAX_SIZE];
+        Arrays.fill(padding, ' ');
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        servlet().doPost(request(launchRequest() + new String(padding)), response);
+        verify(response).sendError(eq(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE), anyString());
+    }
+
+    @Test
+    public void signaturesAreCheckedAsTheBodyStreams() throws Exception {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getResourceAsStream("/signing.p12")) {
+            store.load(in, "skillz".toCharArray());
+        }
+        X509Certificate certificate = (X509Certificate) store.getCertificate("echo-api");
+        KeyStore trusted = KeyStore.getInstance(KeyStore.getDefaultType());
+        trusted.load(null, null);
+        trusted.setCertificateEntry("echo-api", certificate);
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(trusted);
+        byte[] encoded = certificate.getEncoded();
+        SignatureVerifier verifier = new SignatureVerifier(url -> new ByteArrayInputStream(encoded),
+                (X509TrustManager) trust.getTrustManagers()[0], 1, 1, TimeUnit.MINUTES);
+
+        System.clearProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY);
+        DynamicServlet servlet;
+        try {
+            servlet = servlet();
+        } finally {
+            disableSignatureCheck();
+        }
+        servlet.setSignatureVerifier(verifier);
+        // The parser may leave trailing whitespace unread, and it still has to be signed.
+        String body = launchRequest() + "\n\n";
+        Signature signature = Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+        signature.initSign((PrivateKey) store.getKey("echo-api", "skillz".toCharArray()));
+        signature.update(body.getBytes(StandardCharsets.UTF_8));
+        String signed = Base64.getEncoder().encodeToString(signature.sign());
+
+        HttpServletRequest request = request(body);
+        when(request.getHeader(Sdk.SIGNATURE_REQUEST_HEADER)).thenReturn(signed);
+        when(request.getHeader(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER))
+                .thenReturn("https://s3.amazonaws.com/echo.api/echo-api-cert.pem");
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+        servlet.doPost(request, response);
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        request = request(body + " ");
+        when(request.getHeader(Sdk.SIGNATURE_REQUEST_HEADER)).thenReturn(signed);
+        when(request.getHeader(Sdk.SIGNATURE_CERTIFICATE_CHAIN_URL_REQUEST_HEADER))
+                .thenReturn("https://s3.amazonaws.com/echo.api/echo-api-cert.pem");
+        response = mock(HttpServletResponse.class);
+        servlet.doPost(request, response);
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+    }
+
+    private static DynamicServlet servlet() {
+        Registry registry = new Registry(new HashSet<>(Collections.singletonList(ServletTestSkill.class)));
+        return new DynamicServlet(new DynamicSpeechlet(registry.getDispatchTable("/servlet"), new FormatterMappings(),
+                registry, new DefaultTypeFactory()));
+    }
+
+    private static JsonNode post(String body) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+        });
+        servlet().doPost(request(body), response);
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).setContentLength(bytes.size());
+        return MAPPER.readTree(bytes.toByteArray());
+    }
+
+    private static HttpServletRequest request(String body) throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContentLength()).thenReturn(-1);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+        });
+        return request;
+    }
+
+    private static String launchRequest() {
+        return envelope("{\"type\":\"LaunchRequest\",\"requestId\":\"request\",\"timestamp\":\"2016-10-24T00:00:00Z\",\"locale\":\"en-US\"}");
+    }
+
+    private static String intentRequest() {
+        return intentRequest("dynamic");
+    }
+
+    private static String intentRequest(String name) {
+        return envelope("{\"type\":\"IntentRequest\",\"requestId\":\"request\",\"timestamp\":\"2016-10-24T00:00:00Z\"," +
+                "\"locale\":\"en-US\",\"intent\":{\"name\":\"" + name + "\",\"slots\":{}}}");
+    }
+
+    private static String envelope(String request) {
+        return "{\"version\":\"1.0\",\"session\":{\"new\":false,\"sessionId\":\"session\"," +
+                "\"application\":{\"applicationId\":\"application\"},\"attributes\":{\"count\":2,\"name\":\"Gracie\"}," +
+                "\"user\":{\"userId\":\"user\"}},\"request\":" + request + "}";
+    }
+
+    @Skill(path = "/servlet")
+    public static class ServletTestSkill {
+
+        @Launched
+        public SpeechletResponse launched() {
+            return PREPARED;
+        }
+
+        @Intent("dynamic")
+        public SpeechletResponse dynamic() {
+            return dynamic(3);
+        }
+
+        @Intent("future")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public CompletionStage<String> future() {
+            return CompletableFuture.supplyAsync(() -> "Later.");
+        }
+
+        @Intent("failed")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public CompletionStage<String> failed() {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Backend unavailable"));
+            return future;
+        }
+
+        static SpeechletResponse dynamic(int count) {
+            return response("Dynamic " + count + ".");
+        }
+
+        static SpeechletResponse response(String text) {
+            SpeechletResponse response = SpeechletResponse.newTellResponse(PlainTextOutputBuilder.withText(text).build());
+            response.setShouldEndSession(false);
+            return response;
+        }
+    }
+}
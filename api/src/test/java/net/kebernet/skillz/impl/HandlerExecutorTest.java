@@ -0,0 +1,184 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.SpeechletResponse;
+import net.kebernet.skillz.SkillzException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HandlerExecutorTest {
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    public void directInvocationsRunOnTheCallingThread() {
+        SpeechletResponse response = new SpeechletResponse();
+        Thread caller = Thread.currentThread();
+        assertSame(response, new HandlerExecutor(null, 0).execute(() -> {
+            assertSame(caller, Thread.currentThread());
+            return response;
+        }));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executedInvocationsReturnAStage() {
+        SpeechletResponse response = new SpeechletResponse();
+        Thread caller = Thread.currentThread();
+        Object result = new HandlerExecutor(threads, 0).execute(() -> {
+            assertFalse(caller == Thread.currentThread());
+            return CompletableFuture.completedFuture(response);
+        });
+        assertSame(response, ((CompletionStage<SpeechletResponse>) result).toCompletableFuture().join());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void permitsAreHeldUntilTheResponseCompletes() throws Exception {
+        HandlerExecutor executor = new HandlerExecutor(threads, 1);
+        CompletableFuture<SpeechletResponse> first = new CompletableFuture<>();
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            invocations.incrementAndGet();
+            started.countDown();
+            return first;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CountDownLatch invoked = new CountDownLatch(1);
+        CompletionStage<SpeechletResponse> second = (CompletionStage<SpeechletResponse>) executor.execute(() -> {
+            invocations.incrementAndGet();
+            invoked.countDown();
+            return new SpeechletResponse();
+        });
+        assertFalse(invoked.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, invocations.get());
+
+        first.complete(new SpeechletResponse());
+        assertTrue(invoked.await(5, TimeUnit.SECONDS));
+        second.toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(2, invocations.get());
+    }
+
+    @Test(expected = SkillzException.class)
+    public void busySkillsFailAfterWaiting() throws Exception {
+        HandlerExecutor executor = new HandlerExecutor(null, 1, 50, 30000);
+        executor.execute(CompletableFuture::new);
+        executor.execute(SpeechletResponse::new);
+    }
+
+    @Test
+    public void incompleteStagesGiveUpTheirPermits() throws Exception {
+        HandlerExecutor executor = new HandlerExecutor(null, 1, 5000, 50);
+        executor.execute(CompletableFuture::new);
+        SpeechletResponse response = new SpeechletResponse();
+        assertSame(response, executor.execute(() -> response));
+    }
+
+    @Test
+    public void missedDeadlinesCompleteWithTheFallback() throws Exception {
+        SpeechletResponse fallback = new SpeechletResponse();
+        CompletableFuture<SpeechletResponse> never = new CompletableFuture<>();
+        AtomicInteger timeouts = new AtomicInteger();
+        CompletionStage<SpeechletResponse> response = new HandlerExecutor(null, 0)
+                .execute(() -> never, 50, () -> fallback, timeouts::incrementAndGet);
+        assertSame(fallback, response.toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(1, timeouts.get());
+    }
+
+    @Test
+    public void fallbacksAreFormattedOffTheTimerThread() throws Exception {
+        AtomicReference<String> formattedOn = new AtomicReference<>();
+        CompletionStage<SpeechletResponse> response = new HandlerExecutor(null, 0)
+                .execute(() -> new CompletableFuture<>(), 50, () -> {
+                    formattedOn.set(Thread.currentThread().getName());
+                    return new SpeechletResponse();
+                }, () -> {});
+        response.toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertNotEquals("skillz-deadline", formattedOn.get());
+    }
+
+    @Test
+    public void skillsAtTheirLimitReturnTheFallbackImmediately() throws Exception {
+        HandlerExecutor executor = new HandlerExecutor(null, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SpeechletResponse response = new SpeechletResponse();
+        CompletionStage<SpeechletResponse> first = executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response;
+        }, 5000, SpeechletResponse::new, () -> {});
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        SpeechletResponse fallback = new SpeechletResponse();
+        AtomicInteger timeouts = new AtomicInteger();
+        CompletionStage<SpeechletResponse> second = executor.execute(SpeechletResponse::new, 5000,
+                () -> fallback, timeouts::incrementAndGet);
+        assertTrue(second.toCompletableFuture().isDone());
+        assertSame(fallback, second.toCompletableFuture().join());
+        assertEquals(1, timeouts.get());
+
+        release.countDown();
+        assertSame(response, first.toCompletableFuture().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void responsesBeforeTheDeadlineAreReturned() throws Exception {
+        SpeechletResponse response = new SpeechletResponse();
+        AtomicInteger timeouts = new AtomicInteger();
+        CompletionStage<SpeechletResponse> result = new HandlerExecutor(threads, 0)
+                .execute(() -> response, 5000, SpeechletResponse::new, timeouts::incrementAndGet);
+        assertSame(response, result.toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertEquals(0, timeouts.get());
+    }
+
+    @Test
+    public void virtualThreadsAreOnlyUsedWhenTheJdkHasThem() throws Exception {
+        boolean supported;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            supported = true;
+        } catch (ReflectiveOperationException e) {
+            supported = false;
+        }
+        assertEquals(supported, HandlerExecutor.virtualThreads() != null);
+    }
+}
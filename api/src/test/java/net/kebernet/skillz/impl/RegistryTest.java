@@ -15,14 +15,23 @@
  */
 package net.kebernet.skillz.impl;
 
+import com.amazon.speech.speechlet.SessionEndedRequest;
 import net.kebernet.invoker.runtime.impl.IntrospectionData;
+import net.kebernet.skillz.annotation.Launched;
+import net.kebernet.skillz.annotation.SessionEnded;
+import net.kebernet.skillz.annotation.SessionStarted;
 import net.kebernet.skillz.test.BurnsAndAllen;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class RegistryTest {
@@ -49,6 +58,39 @@ public class RegistryTest {
         registry.getDataForPath("/not_a_path").orElseThrow(RuntimeException::new);
     }
 
+    @Test
+    public void dispatchTableForPath() throws Exception {
+        DispatchTable table = registry.getDispatchTable("/burnsallen");
+        assertNotNull(table);
+        assertEquals(BurnsAndAllen.class, table.getType());
+        assertEquals("/burnsallen", table.getPath());
+        assertEquals(1, table.getHandlers("GeorgeAndGracie").size());
+        assertEquals(1, table.getHandlers(Launched.class.getSimpleName()).size());
+        assertEquals(1, table.getHandlers(SessionStarted.class.getSimpleName()).size());
+        assertEquals(1, table.getHandlers(SessionEnded.class.getSimpleName()).size());
+        assertTrue(table.getHandlers("missing").isEmpty());
+        assertNull(registry.getDispatchTable("/not_a_path"));
+    }
 
+    @Test
+    public void expressionsArePrecompiled() throws Exception {
+        Set<String> expressions = registry.getExpressions().getAll().stream()
+                .map(CompiledExpression::getExpression)
+                .collect(Collectors.toSet());
+        assertTrue(expressions.contains("request.reason"));
+        assertTrue(expressions.contains("session.user.userId"));
 
+        CompiledExpression reason = registry.getExpressions().get("request.reason");
+        assertTrue(reason.isPropertyPath());
+        assertFalse(reason.isCompiled());
+        Map<String, Object> context = new HashMap<>();
+        context.put("request", SessionEndedRequest.builder()
+                .withRequestId("foo")
+                .withReason(SessionEndedRequest.Reason.USER_INITIATED)
+                .build());
+        for(int i = 0; i < 3; i++) {
+            assertEquals(SessionEndedRequest.Reason.USER_INITIATED, reason.getValue(context));
+        }
+        assertTrue(reason.isCompiled());
+    }
 }
\ No newline at end of file
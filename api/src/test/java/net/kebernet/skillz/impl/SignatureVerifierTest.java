@@ -0,0 +1,152 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.Sdk;
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks signatures against the self-signed certificate in signing.p12, which was generated with
+ * <code>keytool -genkeypair -alias echo-api -keyalg RSA -keysize 2048 -validity 3650
+ * -dname "CN=echo-api.amazon.com, O=Skillz Test" -ext SAN=dns:echo-api.amazon.com
+ * -storetype PKCS12 -keystore signing.p12 -storepass skillz</code>
+ */
+public class SignatureVerifierTest {
+    private static final String URL = "https://s3.amazonaws.com/echo.api/echo-api-cert.pem";
+    private static final byte[] BODY = "{\"version\":\"1.0\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    private PrivateKey key;
+    private X509Certificate certificate;
+    private SignatureVerifier.CertificateFetcher fetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = getClass().getResourceAsStream("/signing.p12")) {
+            store.load(in, "skillz".toCharArray());
+        }
+        key = (PrivateKey) store.getKey("echo-api", "skillz".toCharArray());
+        certificate = (X509Certificate) store.getCertificate("echo-api");
+        byte[] encoded = certificate.getEncoded();
+        fetcher = url -> {
+            fetches.incrementAndGet();
+            return new ByteArrayInputStream(encoded);
+        };
+    }
+
+    @Test
+    public void validSignaturesAreAccepted() throws Exception {
+        SignatureVerifier verifier = verifier(trusting(certificate));
+        verifier.checkRequestSignature(BODY, sign(BODY), URL);
+        verifier.checkRequestSignature(BODY, sign(BODY), URL);
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void certificatesExpireFromTheCache() throws Exception {
+        SignatureVerifier verifier = verifier(trusting(certificate));
+        verifier.checkRequestSignature(BODY, sign(BODY), URL);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(61));
+        verifier.checkRequestSignature(BODY, sign(BODY), URL);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void changedBodiesAreRejected() throws Exception {
+        SignatureVerifier verifier = verifier(trusting(certificate));
+        String signature = sign(BODY);
+        assertRejected(verifier, "{\"version\":\"2.0\"}".getBytes(StandardCharsets.UTF_8), signature, URL);
+        assertRejected(verifier, BODY, null, URL);
+        assertRejected(verifier, BODY, signature, null);
+    }
+
+    @Test
+    public void untrustedCertificatesAreRejected() throws Exception {
+        SignatureVerifier verifier = verifier(trusting(null));
+        assertRejected(verifier, BODY, sign(BODY), URL);
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void invalidUrlsAreNotFetched() throws Exception {
+        SignatureVerifier verifier = verifier(trusting(certificate));
+        String signature = sign(BODY);
+        assertRejected(verifier, BODY, signature, "http://s3.amazonaws.com/echo.api/echo-api-cert.pem");
+        assertRejected(verifier, BODY, signature, "https://example.com/echo.api/echo-api-cert.pem");
+        assertRejected(verifier, BODY, signature, "https://s3.amazonaws.com/other/echo-api-cert.pem");
+        assertRejected(verifier, BODY, signature, "https://s3.amazonaws.com/echo.api/../other/echo-api-cert.pem");
+        assertRejected(verifier, BODY, signature, "https://s3.amazonaws.com:8443/echo.api/echo-api-cert.pem");
+        assertEquals(0, fetches.get());
+    }
+
+    private SignatureVerifier verifier(X509TrustManager trustManager) {
+        return new SignatureVerifier(fetcher, trustManager, 4, 60, TimeUnit.MINUTES, ticker);
+    }
+
+    private static void assertRejected(SignatureVerifier verifier, byte[] body, String signature, String url) {
+        try {
+            verifier.checkRequestSignature(body, signature, url);
+            fail("Expected " + url + " to be rejected");
+        } catch (SecurityException e) {
+            // expected
+        }
+    }
+
+    private String sign(byte[] body) throws Exception {
+        Signature signature = Signature.getInstance(Sdk.SIGNATURE_ALGORITHM);
+        signature.initSign(key);
+        signature.update(body);
+        return Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    private static X509TrustManager trusting(X509Certificate certificate) throws Exception {
+        KeyStore trusted = KeyStore.getInstance(KeyStore.getDefaultType());
+        trusted.load(null, null);
+        if (certificate != null) {
+            trusted.setCertificateEntry("echo-api", certificate);
+        }
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(trusted);
+        return (X509TrustManager) factory.getTrustManagers()[0];
+    }
+}
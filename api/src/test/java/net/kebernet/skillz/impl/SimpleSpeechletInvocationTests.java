@@ -22,6 +22,7 @@ import com.amazon.speech.speechlet.Session;
 import com.amazon.speech.speechlet.SessionEndedRequest;
 import com.amazon.speech.speechlet.SessionStartedRequest;
 import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletRequest;
 import com.amazon.speech.speechlet.SpeechletResponse;
 import com.amazon.speech.speechlet.User;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
@@ -29,9 +30,13 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
 import net.kebernet.invoker.runtime.impl.IntrospectionData;
 import net.kebernet.invoker.runtime.impl.InvokableMethod;
+import net.kebernet.skillz.Formatter;
 import net.kebernet.skillz.FormatterMappings;
 import net.kebernet.skillz.SkillzException;
+import net.kebernet.skillz.SkillzMetrics;
+import net.kebernet.skillz.annotation.Deadline;
 import net.kebernet.skillz.annotation.ExpressionValue;
+import net.kebernet.skillz.annotation.InstanceScope;
 import net.kebernet.skillz.annotation.Intent;
 import net.kebernet.skillz.annotation.Launched;
 import net.kebernet.skillz.annotation.ResponseFormatter;
@@ -43,16 +48,24 @@ import net.kebernet.skillz.builder.PlainTextOutputBuilder;
 import net.kebernet.skillz.util.Formatters;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 public class SimpleSpeechletInvocationTests {
@@ -134,6 +147,239 @@ public class SimpleSpeechletInvocationTests {
 
     }
 
+    @Test
+    public void onIntentFromDispatchTable() throws Exception {
+        DispatchTable table = registry.getDispatchTable("/invoked");
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(table, new FormatterMappings(),
+                registry, new DefaultTypeFactory());
+        Map<String, com.amazon.speech.slu.Slot> slots = new HashMap<>();
+        slots.put("arg", com.amazon.speech.slu.Slot.builder()
+                .withName("arg")
+                .withValue("gracie")
+                .build());
+        com.amazon.speech.slu.Intent intent = com.amazon.speech.slu.Intent.builder()
+                .withName("intent")
+                .withSlots(slots)
+                .build();
+        IntentRequest request = IntentRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date())
+                .withIntent(intent)
+                .build();
+
+        SpeechletResponse response = speechlet.onIntent(request, session);
+        assertEquals("hello, gracie", ((PlainTextOutputSpeech) response.getOutputSpeech()).getText());
+    }
+
+    @Test
+    public void onExpressionIntent() throws Exception {
+        DispatchTable table = registry.getDispatchTable("/invoked");
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(table, new FormatterMappings(),
+                registry, new DefaultTypeFactory());
+        com.amazon.speech.slu.Intent intent = com.amazon.speech.slu.Intent.builder()
+                .withName("whoami")
+                .build();
+        IntentRequest request = IntentRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date())
+                .withIntent(intent)
+                .build();
+
+        SpeechletResponse response = speechlet.onIntent(request, session);
+        assertEquals("foo id", ((PlainTextOutputSpeech) response.getOutputSpeech()).getText());
+    }
+
+    @Test
+    public void unknownInvocationModesFallBack() {
+        System.setProperty(InvocationMode.SYSTEM_PROPERTY, "METHOD_HANDEL");
+        try {
+            assertEquals(InvocationMode.METHOD_HANDLE, InvocationMode.fromSystemProperties());
+        } finally {
+            System.clearProperty(InvocationMode.SYSTEM_PROPERTY);
+        }
+    }
+
+    @Test
+    public void publicHandlersAreBound() throws Exception {
+        DispatchTable table = registry.getDispatchTable("/invoked");
+        for (CompiledHandler handler : table.getHandlers("select")) {
+            assertTrue(handler.toString(), handler.isBound());
+        }
+        CompiledHandler started = table.getHandlers(SessionStarted.class.getSimpleName()).get(0);
+        assertFalse(started.isBound());
+        assertTrue(started.isMethodHandle());
+    }
+
+    @Test
+    public void onSelectWithInvokerMode() throws Exception {
+        Registry invokerRegistry = new Registry(new HashSet<>(Collections.singletonList(InvokedTestSkill.class)),
+                InvocationMode.INVOKER);
+        DispatchTable table = invokerRegistry.getDispatchTable("/invoked");
+        assertFalse(table.getHandlers("select").get(0).isMethodHandle());
+        assertTrue(registry.getDispatchTable("/invoked").getHandlers("select").get(0).isMethodHandle());
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(table, new FormatterMappings(),
+                invokerRegistry, new DefaultTypeFactory());
+        Map<String, com.amazon.speech.slu.Slot> slots = new HashMap<>();
+        slots.put("int", com.amazon.speech.slu.Slot.builder()
+                .withName("int")
+                .withValue("5")
+                .build());
+        com.amazon.speech.slu.Intent intent = com.amazon.speech.slu.Intent.builder()
+                .withName("select")
+                .withSlots(slots)
+                .build();
+        IntentRequest request = IntentRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date())
+                .withIntent(intent)
+                .build();
+
+        SpeechletResponse response = speechlet.onIntent(request, session);
+        assertEquals("int", ((PlainTextOutputSpeech) response.getOutputSpeech()).getText());
+    }
+
+    @Test
+    public void instanceScopes() throws Exception {
+        Registry scopedRegistry = new Registry(new HashSet<>(Arrays.asList(
+                SingletonTestSkill.class, PooledTestSkill.class, PerRequestTestSkill.class)));
+        LaunchRequest request = LaunchRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date()).build();
+        Map<String, Set<Object>> seen = new HashMap<>();
+        for (String path : Arrays.asList("/singleton", "/pooled", "/perrequest")) {
+            DynamicSpeechlet speechlet = new DynamicSpeechlet(scopedRegistry.getDispatchTable(path),
+                    new FormatterMappings(), scopedRegistry, new DefaultTypeFactory());
+            Set<Object> instances = new HashSet<>();
+            for (int i = 0; i < 5; i++) {
+                instances.add(((PlainTextOutputSpeech) speechlet.onLaunch(request, session).getOutputSpeech()).getText());
+            }
+            seen.put(path, instances);
+        }
+        assertEquals(1, seen.get("/singleton").size());
+        assertTrue(seen.get("/pooled").size() <= 2);
+        assertEquals(5, seen.get("/perrequest").size());
+    }
+
+    @Test
+    public void pooledInstancesAreHeldUntilTheirStageCompletes() throws Exception {
+        Registry pooledRegistry = new Registry(new HashSet<>(Collections.singletonList(PendingPooledTestSkill.class)));
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(pooledRegistry.getDispatchTable("/pendingpool"),
+                new FormatterMappings(), pooledRegistry, new DefaultTypeFactory());
+        LaunchRequest request = LaunchRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date()).build();
+        CompletableFuture<SpeechletResponse> first = speechlet.onLaunchAsync(request, session).toCompletableFuture();
+        CompletableFuture<SpeechletResponse> second = speechlet.onLaunchAsync(request, session).toCompletableFuture();
+        PendingPooledTestSkill.GATE.complete(null);
+        assertNotEquals(((PlainTextOutputSpeech) first.join().getOutputSpeech()).getText(),
+                ((PlainTextOutputSpeech) second.join().getOutputSpeech()).getText());
+    }
+
+    @Test
+    public void declaredFormatterScopes() throws Exception {
+        Registry formattedRegistry = new Registry(new HashSet<>(Collections.singletonList(FormattedTestSkill.class)));
+        Map<Class<?>, Integer> created = new HashMap<>();
+        DefaultTypeFactory factory = new DefaultTypeFactory() {
+            @Override
+            public <T> T create(Class<T> type) {
+                created.merge(type, 1, Integer::sum);
+                return super.create(type);
+            }
+        };
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(formattedRegistry.getDispatchTable("/formatted"),
+                new FormatterMappings(), formattedRegistry, factory);
+        for (int i = 0; i < 3; i++) {
+            for (String intent : Arrays.asList("Shared", "PerRequest", "Declared")) {
+                SpeechletResponse response = speechlet.onIntent(IntentRequest.builder()
+                        .withRequestId("id")
+                        .withTimestamp(new Date())
+                        .withIntent(com.amazon.speech.slu.Intent.builder().withName(intent).build())
+                        .build(), session);
+                assertEquals(intent, ((PlainTextOutputSpeech) response.getOutputSpeech()).getText());
+            }
+        }
+        assertEquals(Integer.valueOf(1), created.get(Formatters.SimplePlainTextTell.class));
+        assertEquals(Integer.valueOf(3), created.get(PrototypeTell.class));
+        assertEquals(Integer.valueOf(1), created.get(DeclaredSingletonTell.class));
+    }
+
+    @Test
+    public void recordsMetrics() throws Exception {
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(registry.getDispatchTable("/invoked"), new FormatterMappings(),
+                registry, new DefaultTypeFactory());
+        List<String> recorded = new ArrayList<>();
+        speechlet.setMetrics(new SkillzMetrics() {
+            @Override
+            public void time(String skill, String intent, Stage stage, long nanos) {
+                recorded.add(skill + " " + intent + " " + stage);
+            }
+
+            @Override
+            public void count(String skill, String intent, Event event) {
+                recorded.add(skill + " " + intent + " " + event);
+            }
+        });
+        speechlet.onLaunch(LaunchRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date()).build(), session);
+        try {
+            speechlet.onIntent(IntentRequest.builder()
+                    .withRequestId("id")
+                    .withTimestamp(new Date())
+                    .withIntent(com.amazon.speech.slu.Intent.builder().withName("missing").build())
+                    .build(), session);
+        } catch (SpeechletException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("/invoked Launched BIND", "/invoked Launched INVOKE", "/invoked Launched FORMAT",
+                "/invoked null NO_HANDLER"), recorded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deadlinesOnSessionEventsAreRejected() throws Exception {
+        Registry deadlineRegistry = new Registry(new HashSet<>(Collections.singletonList(SessionDeadlineTestSkill.class)));
+        new DynamicSpeechlet(deadlineRegistry.getDispatchTable("/sessiondeadline"), new FormatterMappings(),
+                deadlineRegistry, new DefaultTypeFactory());
+    }
+
+    @Test
+    public void missedDeadlinesReturnTheFallback() throws Exception {
+        Registry deadlineRegistry = new Registry(new HashSet<>(Collections.singletonList(DeadlineTestSkill.class)));
+        FormatterMappings mappings = new FormatterMappings();
+        mappings.addMappingFunction(Busy.class, (b, request, s) ->
+                SpeechletResponse.newTellResponse(PlainTextOutputBuilder.withText("Busy").build()));
+        DynamicSpeechlet speechlet = new DynamicSpeechlet(deadlineRegistry.getDispatchTable("/deadline"), mappings,
+                deadlineRegistry, new DefaultTypeFactory());
+        List<String> counted = new ArrayList<>();
+        speechlet.setMetrics(new SkillzMetrics() {
+            @Override
+            public void time(String skill, String intent, Stage stage, long nanos) {
+            }
+
+            @Override
+            public void count(String skill, String intent, Event event) {
+                counted.add(intent + " " + event);
+            }
+        });
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        assertEquals("Busy", text(speechlet.onIntent(intent("Slow"), session)));
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) < 1000);
+        assertEquals("Fast", text(speechlet.onIntent(intent("Fast"), session)));
+        assertEquals(Collections.singletonList("Slow TIMEOUT"), counted);
+    }
+
+    private static IntentRequest intent(String name) {
+        return IntentRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date())
+                .withIntent(com.amazon.speech.slu.Intent.builder().withName(name).build())
+                .build();
+    }
+
+    private static String text(SpeechletResponse response) {
+        return ((PlainTextOutputSpeech) response.getOutputSpeech()).getText();
+    }
+
     @Test(expected = SpeechletException.class)
     public void onUnknownIntent() throws Exception {
         IntrospectionData data = registry.getDataForPath("/invoked").orElseThrow(RuntimeException::new);
@@ -333,6 +579,111 @@ public class SimpleSpeechletInvocationTests {
     }
 
 
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/singleton", scope = InstanceScope.SINGLETON)
+    public static class SingletonTestSkill {
+        @Launched
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String onLaunch(){
+            return Integer.toString(System.identityHashCode(this));
+        }
+    }
+
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/pooled", scope = InstanceScope.POOLED, poolSize = 2)
+    public static class PooledTestSkill {
+        @Launched
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String onLaunch(){
+            return Integer.toString(System.identityHashCode(this));
+        }
+    }
+
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/pendingpool", scope = InstanceScope.POOLED, poolSize = 2)
+    public static class PendingPooledTestSkill {
+        static final CompletableFuture<Void> GATE = new CompletableFuture<>();
+
+        @Launched
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public CompletionStage<String> onLaunch(){
+            return GATE.thenApply(v -> Integer.toString(System.identityHashCode(this)));
+        }
+    }
+
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/perrequest")
+    public static class PerRequestTestSkill {
+        @Launched
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String onLaunch(){
+            return Integer.toString(System.identityHashCode(this));
+        }
+    }
+
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/formatted", scope = InstanceScope.SINGLETON)
+    public static class FormattedTestSkill {
+        @Intent("Shared")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String shared(){
+            return "Shared";
+        }
+
+        @Intent("PerRequest")
+        @ResponseFormatter(PrototypeTell.class)
+        public String perRequest(){
+            return "PerRequest";
+        }
+
+        @Intent("Declared")
+        @ResponseFormatter(value = DeclaredSingletonTell.class, scope = InstanceScope.SINGLETON)
+        public String declared(){
+            return "Declared";
+        }
+    }
+
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/sessiondeadline")
+    public static class SessionDeadlineTestSkill {
+        @SessionStarted
+        @Deadline(value = 50, fallback = Busy.class)
+        public void start(){
+        }
+    }
+
+    @SuppressWarnings({"unused", "WeakerAccess"})
+    @Skill(path="/deadline")
+    @Deadline(value = 50, fallback = Busy.class)
+    public static class DeadlineTestSkill {
+        @Intent("Slow")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String slow() throws InterruptedException {
+            Thread.sleep(5000);
+            return "Slow";
+        }
+
+        @Intent("Fast")
+        @Deadline(value = 5000, fallback = Busy.class)
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String fast() {
+            return "Fast";
+        }
+    }
+
+    public static class Busy {
+    }
+
+    public static class PrototypeTell implements Formatter<String> {
+        @Override
+        public SpeechletResponse apply(String s, SpeechletRequest request, Session session) {
+            return SpeechletResponse.newTellResponse(PlainTextOutputBuilder.withText(s).build());
+        }
+    }
+
+    public static class DeclaredSingletonTell extends PrototypeTell {
+    }
+
     @SuppressWarnings({"unused", "WeakerAccess"})
     @Skill(path="/invoked")
     public static class InvokedTestSkill {
@@ -367,6 +718,13 @@ public class SimpleSpeechletInvocationTests {
             return "hello, "+name;
         }
 
+        @Intent("whoami")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public String whoami(@ExpressionValue("session.user.userId") String userId,
+                             @ExpressionValue("request.requestId") String requestId){
+            return userId+" "+requestId;
+        }
+
         @Intent("throws")
         public String onThrows() {
             throw new IllegalStateException("Whatever.");
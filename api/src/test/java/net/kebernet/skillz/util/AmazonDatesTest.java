@@ -0,0 +1,71 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.util;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AmazonDatesTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2016-10-23T12:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    public void testDates() {
+        assertEquals(LocalDate.of(2015, 11, 24), AmazonDates.parseDate("2015-11-24", clock));
+        assertEquals(LocalDate.of(2015, 11, 23), AmazonDates.parseDate("2015-W48", clock));
+        assertEquals(LocalDate.of(2015, 11, 28), AmazonDates.parseDate("2015-W48-WE", clock));
+        assertEquals(LocalDate.of(2015, 11, 1), AmazonDates.parseDate("2015-11", clock));
+        assertEquals(LocalDate.of(2015, 1, 1), AmazonDates.parseDate("2015", clock));
+        assertEquals(LocalDate.of(2010, 1, 1), AmazonDates.parseDate("201X", clock));
+        assertEquals(LocalDate.of(2015, 12, 1), AmazonDates.parseDate("2015-WI", clock));
+        assertEquals(LocalDate.of(2015, 6, 1), AmazonDates.parseDate("2015-SU", clock));
+        assertEquals(LocalDate.of(2016, 11, 24), AmazonDates.parseDate("XXXX-11-24", clock));
+        assertEquals(LocalDate.of(2016, 10, 23), AmazonDates.parseDate("PRESENT_REF", clock));
+        assertNull(AmazonDates.parseDate("2015-13-01", clock));
+        assertNull(AmazonDates.parseDate("tomorrow", clock));
+        assertNull(AmazonDates.parseDate(null, clock));
+    }
+
+    @Test
+    public void testTimes() {
+        assertEquals(LocalTime.of(14, 25), AmazonDates.parseTime("14:25"));
+        assertEquals(LocalTime.of(14, 25, 30), AmazonDates.parseTime("14:25:30"));
+        assertEquals(LocalTime.of(17, 0), AmazonDates.parseTime("EV"));
+        assertNull(AmazonDates.parseTime("25:00"));
+        assertNull(AmazonDates.parseTime("noon"));
+    }
+
+    @Test
+    public void testDurations() {
+        assertEquals(Duration.ofMinutes(15), AmazonDates.parseDuration("PT15M"));
+        assertEquals(Duration.ofDays(14), AmazonDates.parseDuration("P2W"));
+        assertEquals(Duration.ofDays(1).plusHours(2), AmazonDates.parseDuration("P1DT2H"));
+        assertEquals(Duration.ofSeconds(90), AmazonDates.parseDuration("PT1.5M"));
+        assertEquals(Duration.ofDays(365 + 30), AmazonDates.parseDuration("P1Y1M"));
+        assertNull(AmazonDates.parseDuration("P"));
+        assertNull(AmazonDates.parseDuration("PT15"));
+        assertNull(AmazonDates.parseDuration("15 minutes"));
+    }
+}
@@ -17,12 +17,16 @@ package net.kebernet.skillz.util;
 
 import org.junit.Test;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class CoercionTest {
@@ -66,6 +70,43 @@ public class CoercionTest {
         assertEquals(TestEnum.SECOND, coercion.coerce(1, TestEnum.class));
     }
 
+    @Test
+    public void testConverterHandles() {
+        Coercion.Converter<Object, Integer> toInt = coercion.converterFor(String.class, int.class);
+        assertTrue(toInt == coercion.converterFor(String.class, int.class));
+        assertEquals(Integer.valueOf(3), toInt.convert("3"));
+        assertNull(toInt.convert(null));
+        assertEquals(TestEnum.SECOND, coercion.converterFor(String.class, TestEnum.class).convert("SeCoNd"));
+        assertEquals(TestEnum.FIRST, coercion.converterFor(Integer.class, TestEnum.class).convert(0));
+
+        coercion.addConverter(String.class, Integer.class, source -> 42);
+        assertEquals(Integer.valueOf(42), coercion.converterFor(String.class, Integer.class).convert("3"));
+        assertEquals(Integer.valueOf(42), coercion.coerce("3", Integer.class));
+    }
+
+    @Test
+    public void testJavaTime() {
+        assertEquals(LocalDate.of(2016, 10, 23), coercion.coerce("2016-10-23", LocalDate.class));
+        assertEquals(LocalTime.of(7, 16), coercion.coerce("07:16", LocalTime.class));
+        assertEquals(Duration.ofMinutes(15), coercion.coerce("PT15M", Duration.class));
+
+        Date date = coercion.coerce("2013-02-02 07:16:30", Date.class);
+        assertEquals("2013-02-02 07:16:30", coercion.coerce(date, String.class));
+        Coercion.setDateOverride("dd/MM/yyyy");
+        try {
+            assertEquals("02/02/2013", coercion.coerce(date, String.class));
+            // Lenient input still parses.
+            assertEquals(coercion.coerce("02/02/2013", Date.class), coercion.coerce("2/2/2013", Date.class));
+        } finally {
+            Coercion.setDateOverride(null);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingEnumValue() {
+        coercion.coerce("third", TestEnum.class);
+    }
+
 
     enum TestEnum {
         FIRST,
@@ -0,0 +1,114 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosticsTest {
+
+    private final Logger logger = Logger.getLogger(DiagnosticsTest.class.getCanonicalName());
+    private final Diagnostics diagnostics = Diagnostics.forClass(DiagnosticsTest.class);
+    private final List<String> messages = new ArrayList<>();
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        logger.addHandler(handler);
+        logger.setUseParentHandlers(false);
+    }
+
+    @After
+    public void tearDown() {
+        diagnostics.end();
+        logger.removeHandler(handler);
+        logger.setUseParentHandlers(true);
+        logger.setLevel(null);
+    }
+
+    @Test
+    public void tracesWithId() {
+        logger.setLevel(Level.FINE);
+        diagnostics.begin("request-1");
+        assertTrue(diagnostics.isTracing());
+        diagnostics.trace("world", w -> "hello " + w);
+        diagnostics.trace(() -> "again");
+        diagnostics.end();
+        diagnostics.trace(() -> "after");
+        assertEquals(2, messages.size());
+        assertEquals("[request-1] hello world", messages.get(0));
+        assertEquals("[request-1] again", messages.get(1));
+    }
+
+    @Test
+    public void tracesArePropagatedToOtherThreads() throws Exception {
+        logger.setLevel(Level.FINE);
+        diagnostics.begin("request-3");
+        Supplier<Boolean> task = diagnostics.propagate(() -> {
+            diagnostics.trace(() -> "on the worker");
+            return diagnostics.isTracing();
+        });
+        Function<String, String> function = diagnostics.propagate(s -> {
+            diagnostics.trace(s, v -> "applied to " + v);
+            return s;
+        });
+        diagnostics.end();
+        assertTrue(CompletableFuture.supplyAsync(task).get());
+        assertEquals("done", CompletableFuture.supplyAsync(() -> "done").thenApplyAsync(function).get());
+        diagnostics.trace(() -> "after");
+        assertEquals(Arrays.asList("[request-3] on the worker", "[request-3] applied to done"), messages);
+    }
+
+    @Test
+    public void disabledDoesNotBuildMessages() {
+        logger.setLevel(Level.INFO);
+        diagnostics.begin("request-2");
+        assertFalse(diagnostics.isTracing());
+        diagnostics.trace(() -> {
+            throw new AssertionError("Message should not be built.");
+        });
+        assertTrue(messages.isEmpty());
+    }
+}
@@ -15,16 +15,27 @@
  */
 package net.kebernet.skillz.util;
 
+import com.google.common.base.Stopwatch;
+import net.kebernet.skillz.SkillzException;
 import net.kebernet.skillz.TypeFactory;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 import static org.junit.Assert.*;
 
-@SuppressWarnings("unchecked")
+@SuppressWarnings({"unchecked", "deprecation"})
 public class PoolTest {
 
     @Test
@@ -106,4 +117,198 @@ public class PoolTest {
         System.out.println(checked);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLeasingLazyGrowth() {
+        AtomicInteger created = new AtomicInteger();
+        TypeFactory factory = new TypeFactory() {
+            @Override
+            public <T> T create(Class<T> type) {
+                return (T) Integer.toString(created.getAndIncrement());
+            }
+        };
+        LeasingPool<String> pool = new LeasingPool<>(factory, String.class, 100);
+        for (int i = 0; i < 100; i++) {
+            try (LeasingPool.Lease<String> lease = pool.lease()) {
+                assertEquals("0", lease.get());
+            }
+        }
+        assertEquals(1, created.get());
+        LeasingPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.getSize());
+        assertEquals(0, stats.getInUse());
+        assertEquals(100, stats.getCheckouts());
+    }
+
+    @Test
+    public void testLeasingTryCheckout() {
+        TypeFactory factory = new TypeFactory() {
+            int count = 0;
+
+            @Override
+            public <T> T create(Class<T> type) {
+                return (T) Integer.toString(count++);
+            }
+        };
+        LeasingPool<String> pool = new LeasingPool<>(factory, String.class, 2);
+        String first = pool.tryCheckout();
+        String second = pool.tryCheckout();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(pool.tryCheckout());
+        assertEquals(1, pool.getStats().getExhaustions());
+        assertEquals(1.0, pool.getStats().getUtilization(), 0.0);
+        pool.checkin(first);
+        assertEquals(first, pool.tryCheckout());
+    }
+
+    @Test(expected = SkillzException.class)
+    public void testLeasingFull() {
+        TypeFactory factory = new TypeFactory() {
+            @Override
+            public <T> T create(Class<T> type) {
+                return (T) "value";
+            }
+        };
+        LeasingPool<String> pool = new LeasingPool<>(factory, String.class, 1);
+        pool.checkin(pool.checkout());
+        pool.checkin("another");
+    }
+
+    @Test
+    public void testLeasingWait() {
+        TypeFactory factory = new TypeFactory() {
+            int count = 0;
+
+            @Override
+            public <T> T create(Class<T> type) {
+                return (T) Integer.toString(count++);
+            }
+        };
+        LeasingPool<String> pool = new LeasingPool<>(factory, String.class, 1);
+        String last = pool.checkout();
+        ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        // Schedule another thread to check into the empty pool
+        scheduledExecutorService.schedule(() -> pool.checkin(last), 200, TimeUnit.MILLISECONDS);
+        String checked = pool.checkout();
+        assertEquals(last, checked);
+        assertEquals(1, pool.getStats().getWaits());
+        assertTrue(pool.getStats().getWaitTime(TimeUnit.MILLISECONDS) > 0);
+        scheduledExecutorService.shutdown();
+    }
+
+    @Test
+    public void testLeasingWaitCreatesAfterFailedCreate() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean failed = new AtomicBoolean();
+        TypeFactory factory = new TypeFactory() {
+            @Override
+            public <T> T create(Class<T> type) {
+                if (failed.compareAndSet(false, true)) {
+                    creating.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("create failed");
+                }
+                return (T) "value";
+            }
+        };
+        LeasingPool<String> pool = new LeasingPool<>(factory, String.class, 1, 1, TimeUnit.SECONDS);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> failing = executor.submit(pool::tryCheckout);
+        assertTrue(creating.await(5, TimeUnit.SECONDS));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(release::countDown, 100, TimeUnit.MILLISECONDS);
+        assertEquals("value", pool.checkout());
+        try {
+            failing.get();
+            fail("Expected the first create to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        executor.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test(expected = SkillzException.class)
+    public void testLeasingWaitFail() {
+        TypeFactory factory = new TypeFactory() {
+            @Override
+            public <T> T create(Class<T> type) {
+                return (T) "value";
+            }
+        };
+        LeasingPool<String> pool = new LeasingPool<>(factory, String.class, 1, 100, TimeUnit.MILLISECONDS);
+        pool.checkout();
+        pool.checkout();
+    }
+
+    /**
+     * Hammers both pool implementations from more threads than there are objects, checking that
+     * an object is never handed to two threads at once and logging the throughput of each.
+     */
+    @Test
+    public void testContention() throws Exception {
+        final int threads = 16;
+        final int iterations = 20000;
+        final int size = 4;
+        TypeFactory factory = new TypeFactory() {
+            @Override
+            public <T> T create(Class<T> type) {
+                return (T) new AtomicBoolean();
+            }
+        };
+        LeasingPool<AtomicBoolean> leasingPool = new LeasingPool<>(factory, AtomicBoolean.class, size);
+        long leasing = contend(threads, iterations, () -> {
+            try (LeasingPool.Lease<AtomicBoolean> lease = leasingPool.lease()) {
+                use(lease.get());
+            }
+        });
+        Pool<AtomicBoolean> pool = new Pool<>(factory, AtomicBoolean.class, size);
+        long blocking = contend(threads, iterations, () -> {
+            AtomicBoolean value = pool.checkout();
+            try {
+                use(value);
+            } finally {
+                pool.checkin(value);
+            }
+        });
+        LeasingPool.Stats stats = leasingPool.getStats();
+        Logger.getAnonymousLogger().info("Contention with " + threads + " threads on " + size + " objects: LeasingPool " +
+                leasing + "ms (" + stats + "), Pool " + blocking + "ms");
+        assertEquals((long) threads * iterations, stats.getCheckouts());
+        assertEquals(0, stats.getInUse());
+        assertTrue(stats.getSize() <= size);
+    }
+
+    private static void use(AtomicBoolean value) {
+        assertTrue("Object was checked out twice.", value.compareAndSet(false, true));
+        Thread.yield();
+        value.set(false);
+    }
+
+    private static long contend(int threads, int iterations, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < iterations; i++) {
+                    task.run();
+                }
+                return null;
+            }));
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.benchmarks;
+
+import net.kebernet.skillz.util.Coercion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Coercion.coerce across the built-in conversions, and the same conversions through
+ * a cached converter handle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoercionBenchmark {
+
+    @Param({"stringToInt", "stringToBoolean", "stringToLong", "stringToDouble", "stringToDate", "stringToList",
+            "stringToEnum", "dateToString", "listToString", "intToString", "intToLong", "boxing", "assignable"})
+    public String conversion;
+
+    private final Coercion coercion = new Coercion();
+    private Object source;
+    private Class<?> destination;
+    private Coercion.Converter<Object, ?> converter;
+
+    @Setup
+    public void setup() {
+        switch (conversion) {
+            case "stringToInt":
+                source = "42";
+                destination = int.class;
+                break;
+            case "stringToBoolean":
+                source = "yes";
+                destination = Boolean.class;
+                break;
+            case "stringToLong":
+                source = "1477207000000";
+                destination = Long.class;
+                break;
+            case "stringToDouble":
+                source = "3.14159";
+                destination = double.class;
+                break;
+            case "stringToDate":
+                source = "2016-10-23 07:16:30";
+                destination = Date.class;
+                break;
+            case "stringToList":
+                source = "one|two|three";
+                destination = List.class;
+                break;
+            case "stringToEnum":
+                source = "seconds";
+                destination = TimeUnit.class;
+                break;
+            case "dateToString":
+                source = new Date(1477207000000L);
+                destination = String.class;
+                break;
+            case "listToString":
+                source = Arrays.asList("one", "two", "three");
+                destination = String.class;
+                break;
+            case "intToString":
+                source = 42;
+                destination = String.class;
+                break;
+            case "intToLong":
+                source = 42;
+                destination = Long.class;
+                break;
+            case "boxing":
+                source = 42;
+                destination = int.class;
+                break;
+            case "assignable":
+                source = "value";
+                destination = CharSequence.class;
+                break;
+            default:
+                throw new IllegalArgumentException(conversion);
+        }
+        converter = coercion.converterFor(source.getClass(), destination);
+    }
+
+    @Benchmark
+    public Object coerce() {
+        return coercion.coerce(source, destination);
+    }
+
+    @Benchmark
+    public Object converter() {
+        return converter.convert(source);
+    }
+}
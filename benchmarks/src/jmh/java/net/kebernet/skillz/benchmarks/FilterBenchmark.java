@@ -0,0 +1,96 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.benchmarks;
+
+import net.kebernet.skillz.FormatterMappings;
+import net.kebernet.skillz.SkillzFilter;
+import net.kebernet.skillz.dropwizard.TestSkill1;
+import net.kebernet.skillz.impl.DefaultTypeFactory;
+import net.kebernet.skillz.impl.Registry;
+import net.kebernet.skillz.test.BurnsAndAllen;
+import net.kebernet.skillz.util.ConfigureSystemProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SkillzFilter.doFilter end to end, from the JSON request body to the JSON
+ * response, for the TestSkill1 fixture.
+ * <p>
+ *     Request signature checking is disabled with {@link ConfigureSystemProperties#setForTesting()},
+ *     because verifying a signature means fetching Amazon's certificate chain.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    private static final String INTENT_REQUEST = "{" +
+            "\"version\":\"1.0\"," +
+            "\"session\":{" +
+            "\"new\":true," +
+            "\"sessionId\":\"amzn1.echo-api.session.846d3125-057a-465c-bc37-f8169d9bd086\"," +
+            "\"application\":{\"applicationId\":\"amzn1.ask.skill.9b6e14e9-d303-4b15-9630-a9e24d9d3bb7\"}," +
+            "\"attributes\":{}," +
+            "\"user\":{\"userId\":\"amzn1.ask.account.AFA47JVP37WSAN7WBMFBMSWCBYXXKC5N5QACCK55OJTWWTYFTECM6W3EBO3KGH72\"}" +
+            "}," +
+            "\"request\":{" +
+            "\"type\":\"IntentRequest\"," +
+            "\"requestId\":\"amzn1.echo-api.request.bfcc104f-17a2-4e6c-8f15-2e927b24f3a3\"," +
+            "\"timestamp\":\"2016-10-23T07:16:30Z\"," +
+            "\"locale\":\"en-US\"," +
+            "\"intent\":{\"name\":\"TestyMcTestFace\",\"slots\":{\"name\":{\"name\":\"name\",\"value\":\"Gracie\"}}}" +
+            "}" +
+            "}";
+
+    private static final FilterChain NOT_FOUND = (request, response) -> {
+        throw new IllegalStateException("Request was not handled by the filter.");
+    };
+
+    private SkillzFilter filter;
+    private byte[] body;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() {
+        ConfigureSystemProperties.setForTesting();
+        Registry registry = new Registry(new HashSet<>(Arrays.asList(TestSkill1.class, BurnsAndAllen.class)));
+        filter = new SkillzFilter(registry, new DefaultTypeFactory(), new FormatterMappings());
+        body = INTENT_REQUEST.getBytes(StandardCharsets.UTF_8);
+        out = new ByteArrayOutputStream(1024);
+    }
+
+    @Benchmark
+    public int doFilter() throws IOException, ServletException {
+        out.reset();
+        filter.doFilter(Servlets.post("/test1", body), Servlets.response(out), NOT_FOUND);
+        return out.size();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.benchmarks;
+
+import com.amazon.speech.slu.Intent;
+import com.amazon.speech.slu.Slot;
+import com.amazon.speech.speechlet.Application;
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.User;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared requests and sessions for the benchmarks.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates a session for a user.
+     * @return A new Session.
+     */
+    public static Session session() {
+        return Session.builder().withSessionId("sessionid")
+                .withAttributes(new HashMap<>())
+                .withIsNew(true)
+                .withApplication(new Application("benchmark"))
+                .withUser(User.builder().withUserId("george").build())
+                .build();
+    }
+
+    /**
+     * Creates an IntentRequest.
+     * @param name The intent name.
+     * @param slotValues Alternating slot names and values.
+     * @return A new IntentRequest.
+     */
+    public static IntentRequest intent(String name, String... slotValues) {
+        Map<String, Slot> slots = new HashMap<>();
+        for (int i = 0; i < slotValues.length; i += 2) {
+            slots.put(slotValues[i], Slot.builder().withName(slotValues[i]).withValue(slotValues[i + 1]).build());
+        }
+        return IntentRequest.builder()
+                .withRequestId("id")
+                .withTimestamp(new Date())
+                .withIntent(Intent.builder().withName(name).withSlots(slots).build())
+                .build();
+    }
+}
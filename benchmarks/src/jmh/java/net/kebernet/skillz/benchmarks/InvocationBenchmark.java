@@ -0,0 +1,81 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.benchmarks;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletException;
+import com.amazon.speech.speechlet.SpeechletResponse;
+import net.kebernet.skillz.FormatterMappings;
+import net.kebernet.skillz.impl.DefaultTypeFactory;
+import net.kebernet.skillz.impl.DynamicSpeechlet;
+import net.kebernet.skillz.impl.InvocationMode;
+import net.kebernet.skillz.impl.Registry;
+import net.kebernet.skillz.impl.SimpleSpeechletInvocationTests.InvokedTestSkill;
+import net.kebernet.skillz.test.BurnsAndAllen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of dispatching an intent to a skill method with each {@link InvocationMode},
+ * both for an intent with a single handler and for one that has to choose between overloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InvocationBenchmark {
+
+    @Param({"METHOD_HANDLE", "INVOKER"})
+    public InvocationMode mode;
+
+    private DynamicSpeechlet single;
+    private DynamicSpeechlet overloaded;
+    private IntentRequest singleRequest;
+    private IntentRequest overloadedRequest;
+    private Session session;
+
+    @Setup
+    public void setup() {
+        Registry registry = new Registry(new HashSet<>(Arrays.asList(BurnsAndAllen.class, InvokedTestSkill.class)), mode);
+        single = new DynamicSpeechlet(registry.getDispatchTable("/burnsallen"), new FormatterMappings(),
+                registry, new DefaultTypeFactory());
+        overloaded = new DynamicSpeechlet(registry.getDispatchTable("/invoked"), new FormatterMappings(),
+                registry, new DefaultTypeFactory());
+        singleRequest = Fixtures.intent("GeorgeAndGracie", "greeting", "goodnight", "name", "Gracie");
+        overloadedRequest = Fixtures.intent("select", "string", "foo", "int", "5");
+        session = Fixtures.session();
+    }
+
+    @Benchmark
+    public SpeechletResponse georgeAndGracie() throws SpeechletException {
+        return single.onIntent(singleRequest, session);
+    }
+
+    @Benchmark
+    public SpeechletResponse overloadedSelect() throws SpeechletException {
+        return overloaded.onIntent(overloadedRequest, session);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.benchmarks;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * Minimal in-memory servlet requests and responses, so the filter can be benchmarked
+ * without a container.
+ */
+final class Servlets {
+
+    private Servlets() {
+    }
+
+    /**
+     * Creates a POST request.
+     * @param uri The request URI.
+     * @param body The request body.
+     * @return A request that reads the body.
+     */
+    static HttpServletRequest post(String uri, byte[] body) {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        ServletInputStream stream = new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+        };
+        return proxy(HttpServletRequest.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getMethod":
+                    return "POST";
+                case "getRequestURI":
+                    return uri;
+                case "getProtocol":
+                    return "HTTP/1.1";
+                case "getContentType":
+                    return "application/json";
+                case "getCharacterEncoding":
+                    return "utf-8";
+                case "getContentLength":
+                    return body.length;
+                case "getInputStream":
+                    return stream;
+                case "getHeaderNames":
+                case "getAttributeNames":
+                    return Collections.emptyEnumeration();
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Creates a response that writes into a buffer.
+     * @param out The buffer to write to.
+     * @return A response.
+     */
+    static HttpServletResponse response(ByteArrayOutputStream out) {
+        ServletOutputStream stream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                out.write(b, off, len);
+            }
+        };
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        return proxy(HttpServletResponse.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getOutputStream":
+                    return stream;
+                case "getWriter":
+                    return writer;
+                case "getCharacterEncoding":
+                    return "utf-8";
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(Servlets.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.ui.OutputSpeech;
+import net.kebernet.skillz.benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering speech and card content with the MustacheBundle and ConstantBundle,
+ * using the templates from the api and format tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BundleBenchmark {
+
+    private static final List<String> RESPONSE = Arrays.asList(
+            "This is a test of the emergency broadcast system",
+            "The broadcasters in your area along with state, local, and federal authorities have " +
+                    "developed this system to keep you informed in the event of an emergency",
+            "If this had been an actual emergency, the attention signal you just heard would have been " +
+                    "followed by news, weather, and traffic on the nines");
+
+    private MustacheBundle mustache;
+    private ConstantBundle constant;
+    private IntentRequest request;
+    private Session session;
+
+    @Setup
+    public void setup() {
+        mustache = new MustacheBundle("/alltypes", "en");
+        constant = new ConstantBundle("/constant", "en");
+        request = Fixtures.intent("Emergency");
+        session = Fixtures.session();
+    }
+
+    @Benchmark
+    public OutputSpeech mustacheSpeech() {
+        return mustache.createOutputSpeech(RESPONSE, request, session);
+    }
+
+    @Benchmark
+    public String mustacheCard() {
+        return mustache.createCardContent(RESPONSE, request, session);
+    }
+
+    @Benchmark
+    public OutputSpeech constantSpeech() {
+        return constant.createOutputSpeech(RESPONSE, request, session);
+    }
+
+    @Benchmark
+    public String constantCard() {
+        return constant.createCardContent(RESPONSE, request, session);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.impl;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import net.kebernet.invoker.runtime.ParameterValue;
+import net.kebernet.skillz.benchmarks.Fixtures;
+import net.kebernet.skillz.impl.SimpleSpeechletInvocationTests.InvokedTestSkill;
+import net.kebernet.skillz.test.BurnsAndAllen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures binding request values to skill method parameters, for @Slot parameters and for
+ * @ExpressionValue parameters with simple property paths. This lives in the impl package to reach the package
+ * private {@link MethodBinder}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BindingBenchmark {
+
+    private MethodBinder slots;
+    private MethodBinder expressions;
+    private IntentRequest slotRequest;
+    private IntentRequest expressionRequest;
+    private Session session;
+
+    @Setup
+    public void setup() {
+        Registry registry = new Registry(new HashSet<>(Arrays.asList(BurnsAndAllen.class, InvokedTestSkill.class)));
+        slots = registry.getDispatchTable("/burnsallen").getHandlers("GeorgeAndGracie").get(0).getBinder();
+        expressions = registry.getDispatchTable("/invoked").getHandlers("whoami").get(0).getBinder();
+        slotRequest = Fixtures.intent("GeorgeAndGracie", "greeting", "goodnight", "name", "Gracie");
+        expressionRequest = Fixtures.intent("whoami");
+        session = Fixtures.session();
+    }
+
+    @Benchmark
+    public List<ParameterValue> slotValues() {
+        return slots.bind(slotRequest, session);
+    }
+
+    @Benchmark
+    public Object[] slotArguments() {
+        return slots.bindArguments(slotRequest, session);
+    }
+
+    @Benchmark
+    public List<ParameterValue> expressionValues() {
+        return expressions.bind(expressionRequest, session);
+    }
+
+    @Benchmark
+    public Object[] expressionArguments() {
+        return expressions.bindArguments(expressionRequest, session);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.dropwizard;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import net.kebernet.skillz.SkillzMetrics;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A SkillzMetrics implementation backed by a Dropwizard MetricRegistry.
+ * <p>
+ *     Timers are named <code>skillz.[skill].[stage]</code> for the skill as a whole and
+ *     <code>skillz.[skill].[intent].[stage]</code> for each intent. Counters follow the same
+ *     pattern with the event name in place of the stage. Metrics are looked up once and cached,
+ *     so recording doesn't build metric names.
+ * </p>
+ */
+public class DropwizardSkillzMetrics implements SkillzMetrics {
+    private static final String PREFIX = "skillz";
+    private final MetricRegistry registry;
+    private final ConcurrentMap<String, Metrics> skills = new ConcurrentHashMap<>();
+
+    public DropwizardSkillzMetrics(@Nonnull MetricRegistry registry) {
+        this.registry = checkNotNull(registry);
+    }
+
+    @Override
+    public void time(String skill, @Nullable String intent, Stage stage, long nanos) {
+        Metrics metrics = forSkill(skill);
+        metrics.timer(stage).update(nanos, TimeUnit.NANOSECONDS);
+        if (intent != null) {
+            metrics.forIntent(intent).timer(stage).update(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void count(String skill, @Nullable String intent, Event event) {
+        Metrics metrics = forSkill(skill);
+        metrics.counter(event).inc();
+        if (intent != null) {
+            metrics.forIntent(intent).counter(event).inc();
+        }
+    }
+
+    private Metrics forSkill(String skill) {
+        Metrics metrics = skills.get(skill);
+        if (metrics == null) {
+            String name = skill.startsWith("/") ? skill.substring(1) : skill;
+            metrics = skills.computeIfAbsent(skill, s -> new Metrics(MetricRegistry.name(PREFIX, name)));
+        }
+        return metrics;
+    }
+
+    /**
+     * The timers and counters under a single name, plus the children for each intent.
+     */
+    private class Metrics {
+        private final String name;
+        private final Timer[] timers = new Timer[Stage.values().length];
+        private final Counter[] counters = new Counter[Event.values().length];
+        private final ConcurrentMap<String, Metrics> intents = new ConcurrentHashMap<>();
+
+        private Metrics(String name) {
+            this.name = name;
+            for (Stage stage : Stage.values()) {
+                timers[stage.ordinal()] = registry.timer(MetricRegistry.name(name, stage.name().toLowerCase()));
+            }
+            for (Event event : Event.values()) {
+                counters[event.ordinal()] = registry.counter(MetricRegistry.name(name, event.name().toLowerCase()));
+            }
+        }
+
+        Timer timer(Stage stage) {
+            return timers[stage.ordinal()];
+        }
+
+        Counter counter(Event event) {
+            return counters[event.ordinal()];
+        }
+
+        Metrics forIntent(String intent) {
+            Metrics metrics = intents.get(intent);
+            if (metrics == null) {
+                metrics = intents.computeIfAbsent(intent, i -> new Metrics(MetricRegistry.name(name, i)));
+            }
+            return metrics;
+        }
+    }
+}
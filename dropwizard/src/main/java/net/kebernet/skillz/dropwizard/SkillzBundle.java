@@ -24,6 +24,7 @@ import net.kebernet.skillz.SkillzFilter;
 import net.kebernet.skillz.TypeFactory;
 import net.kebernet.skillz.annotation.Skill;
 import net.kebernet.skillz.impl.DefaultTypeFactory;
+import net.kebernet.skillz.servlet3.AsyncSkillzFilter;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -101,9 +102,11 @@ public class SkillzBundle implements Bundle {
 
     @Override
     public void run(Environment environment) {
-        SkillzFilter filter = typeFactory.create(SkillzFilter.class);
+        SkillzFilter filter = typeFactory.create(AsyncSkillzFilter.class);
         filter.setPathPrefix(skillzPath.substring(0, skillzPath.length() -2));
+        filter.setMetrics(new DropwizardSkillzMetrics(environment.metrics()));
         FilterHolder holder = new FilterHolder(filter);
+        holder.setAsyncSupported(true);
         environment.getApplicationContext().addFilter(holder, skillzPath,
                 EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD, DispatcherType.INCLUDE) );
         StringBuilder sb = new StringBuilder("Skillz: ")
@@ -0,0 +1,41 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.dropwizard;
+
+import com.codahale.metrics.MetricRegistry;
+import net.kebernet.skillz.SkillzMetrics;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DropwizardSkillzMetricsTest {
+
+    @Test
+    public void recordsSkillAndIntentMetrics() {
+        MetricRegistry registry = new MetricRegistry();
+        DropwizardSkillzMetrics metrics = new DropwizardSkillzMetrics(registry);
+        metrics.time("/test1", "TestyMcTestFace", SkillzMetrics.Stage.INVOKE, 1000);
+        metrics.time("/test1", "TestyMcTestFace", SkillzMetrics.Stage.INVOKE, 2000);
+        metrics.time("/test1", null, SkillzMetrics.Stage.PARSE, 3000);
+        metrics.count("/test1", "Missing", SkillzMetrics.Event.NO_HANDLER);
+
+        assertEquals(2, registry.timer("skillz.test1.invoke").getCount());
+        assertEquals(2, registry.timer("skillz.test1.TestyMcTestFace.invoke").getCount());
+        assertEquals(1, registry.timer("skillz.test1.parse").getCount());
+        assertEquals(1, registry.counter("skillz.test1.no_handler").getCount());
+        assertEquals(1, registry.counter("skillz.test1.Missing.no_handler").getCount());
+    }
+}
@@ -18,111 +18,56 @@ package net.kebernet.skillz.format;
 import com.amazon.speech.speechlet.Session;
 import com.amazon.speech.speechlet.SpeechletRequest;
 import com.amazon.speech.ui.OutputSpeech;
-import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
-import com.github.mustachejava.MustacheFactory;
-import com.google.common.base.Strings;
-import net.kebernet.skillz.SkillzException;
 import net.kebernet.skillz.builder.PlainTextOutputBuilder;
 import net.kebernet.skillz.builder.SsmlOutputBuilder;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
-import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.ResourceBundle;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
 import static com.google.common.base.Preconditions.checkState;
 
 /**
- * A Bundle implementation that used Mustache.java to format responses.
+ * A Bundle implementation that used Mustache.java to format responses. The compiled
+ * templates come from a {@link MustacheTemplates} registry, so creating a bundle is cheap.
  *
  * <p>This class will allow you to format </p>
  */
 @SuppressWarnings("WeakerAccess")
 public class MustacheBundle implements Bundle {
-    private static final Logger LOGGER = Logger.getLogger(ResourceBundle.class.getCanonicalName());
-    private final MustacheFactory mf = new DefaultMustacheFactory();
-    private final String bundleName;
-    private final String languageCode;
-    private Mustache ssmlTemplate;
-    private Mustache txtTemplate;
-    private Mustache cardTemplate;
+    private final MustacheTemplates.Templates templates;
 
     /**
-     * Creates a new bundle form a classpath resource
+     * Creates a new bundle form a classpath resource, using the shared {@link MustacheTemplates}.
      * @param bundleName The resource path. Should start with "/"
      * @param languageCode The language code, if needed.
      */
     public MustacheBundle(String bundleName, String languageCode) {
-        this.bundleName = bundleName;
-        this.languageCode = languageCode;
-        init();
+        this(MustacheTemplates.shared(), bundleName, languageCode);
     }
 
-    private void init(){
-        this.ssmlTemplate = createMustacheFromResource(mf, bundleName, languageCode, "ssml");
-        this.txtTemplate = createMustacheFromResource(mf, bundleName,languageCode, "txt");
-        this.cardTemplate = createMustacheFromResource(mf, bundleName, languageCode, "card");
-        checkState( ssmlTemplate != null || txtTemplate != null, "Could not find txt or ssml output for "+bundleName);
+    /**
+     * Creates a new bundle from the templates in a registry.
+     * @param registry The MustacheTemplates to take the compiled templates from.
+     * @param bundleName The resource path. Should start with "/"
+     * @param languageCode The language code, if needed.
+     */
+    public MustacheBundle(MustacheTemplates registry, String bundleName, String languageCode) {
+        this.templates = registry.get(bundleName, languageCode);
+        checkState( templates.getSsml() != null || templates.getTxt() != null, "Could not find txt or ssml output for "+bundleName);
     }
 
     @Override
     public OutputSpeech createOutputSpeech(Object response, SpeechletRequest request, Session session){
+        Mustache ssmlTemplate = templates.getSsml();
+        Mustache txtTemplate = templates.getTxt();
         boolean useSSML = ssmlTemplate != null;
-        String formatted = format(useSSML ? ssmlTemplate : txtTemplate, response, request, session);
-        return useSSML ? SsmlOutputBuilder.withSsml(formatted.replaceAll("\n", "").replaceAll("  +", "")).build() :
+        String formatted = RenderBuffer.render(useSSML ? ssmlTemplate : txtTemplate, useSSML, response, request, session);
+        return useSSML ? SsmlOutputBuilder.withSsml(formatted).build() :
                 PlainTextOutputBuilder.withText(formatted).build();
     }
 
     @Override
     public String createCardContent(Object response, SpeechletRequest request, Session session){
-        String cardContent = cardTemplate == null ? "" : format(cardTemplate, response, request, session);
-        if(cardContent.lastIndexOf(" ") == -1){
-            return cardContent.substring(0, 7999);
-        }
-        while(cardContent.length() > 8000){
-            cardContent = cardContent.substring(0, cardContent.lastIndexOf(" ")) + "...";
-        }
-
-        return Strings.isNullOrEmpty(cardContent) ? null : cardContent;
-    }
-
-    private static Mustache createMustacheFromResource(MustacheFactory mf, String resourceBaseName, String languageCode, String fileType){
-        URL url = null;
-        try {
-            url = MustacheBundle.class.getResource(resourceBaseName+"."+languageCode+"."+fileType+".mustache");
-            url = url == null ? MustacheBundle.class.getResource(resourceBaseName+"."+fileType+".mustache") : url;
-            if(url != null) {
-                return mf.compile(new InputStreamReader(url.openStream(), "utf-8"), resourceBaseName);
-            }
-
-        } catch (IOException e) {
-            LOGGER.log(Level.WARNING, "Failed to parse " + url.toExternalForm(), e);
-        }
-        return null;
-    }
-
-    private static String format(Mustache template, Object response, SpeechletRequest request, Session session){
-        Map<String, Object> ctx = new HashMap<>(3);
-        ctx.put("response", response);
-        ctx.put("request", request);
-        ctx.put("session", session);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (OutputStreamWriter writer = new OutputStreamWriter(baos, "utf-8")) {
-            template.execute(writer, ctx);
-            writer.flush();
-            return new String(baos.toByteArray(), "utf-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new SkillzException("Failed to encode formatted response", e);
-        } catch (IOException e) {
-            throw new SkillzException("Failed for format response "+response, e);
-        }
+        Mustache cardTemplate = templates.getCard();
+        String cardContent = cardTemplate == null ? null : RenderBuffer.render(cardTemplate, false, response, request, session);
+        return limitCardContent(cardContent);
     }
 }
@@ -0,0 +1,284 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+import com.google.common.base.Strings;
+import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
+import io.github.lukehutch.fastclasspathscanner.matchprocessor.FileMatchProcessor;
+import net.kebernet.skillz.SkillzException;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A registry of compiled Mustache templates, shared by every {@link MustacheBundle}. Each template
+ * file is compiled once, by a single MustacheFactory, and bundles for the same name and language
+ * share the same compiled templates.
+ * <p>
+ * The {@link #shared()} registry precompiles every <code>.mustache</code> file on the classpath
+ * the first time it is used. For development, {@link #watch(Path)} recompiles templates when they
+ * change in a source directory. Setting the system property <code>net.kebernet.skillz.mustache.watch</code>
+ * to a directory turns this on for the shared registry.
+ * </p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class MustacheTemplates {
+    private static final Logger LOGGER = Logger.getLogger(MustacheTemplates.class.getCanonicalName());
+    public static final String WATCH_PROPERTY = "net.kebernet.skillz.mustache.watch";
+    private static final String EXTENSION = ".mustache";
+    private static final String SSML = "ssml";
+    private static final String TXT = "txt";
+    private static final String CARD = "card";
+    private static final String BUNDLE_FILES = ".*\\.(" + SSML + "|" + TXT + "|" + CARD + ")\\" + EXTENSION;
+
+    private final MustacheFactory factory = new DefaultMustacheFactory();
+    /**
+     * Every template file seen so far by resource path, including ones that don't exist.
+     */
+    private final Map<String, Template> files = new ConcurrentHashMap<>();
+    private final Map<String, Templates> bundles = new ConcurrentHashMap<>();
+
+    /**
+     * The process-wide registry.
+     * @return The shared MustacheTemplates.
+     */
+    public static MustacheTemplates shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * Gets the templates for a bundle.
+     * @param bundleName The resource path. Should start with "/"
+     * @param languageCode The language code, if needed.
+     * @return The Templates for the bundle.
+     */
+    public Templates get(String bundleName, @Nullable String languageCode) {
+        String key = Strings.isNullOrEmpty(languageCode) ? bundleName : bundleName + "." + languageCode;
+        Templates templates = bundles.get(key);
+        return templates != null ? templates : bundles.computeIfAbsent(key, k -> new Templates(
+                resolve(bundleName, languageCode, SSML),
+                resolve(bundleName, languageCode, TXT),
+                resolve(bundleName, languageCode, CARD)));
+    }
+
+    /**
+     * Compiles every bundle template, <code>*.ssml.mustache</code>, <code>*.txt.mustache</code> or
+     * <code>*.card.mustache</code>, on the classpath. Other Mustache files, such as views, are left
+     * alone, and a template that fails to compile is logged and skipped.
+     * @return The number of templates compiled.
+     */
+    public int precompile() {
+        AtomicInteger count = new AtomicInteger();
+        new FastClasspathScanner()
+                .matchFilenamePattern(BUNDLE_FILES, (FileMatchProcessor) (relativePath, inputStream, length) -> {
+                    String resource = "/" + relativePath;
+                    Template template = files.computeIfAbsent(resource, Template::new);
+                    try {
+                        template.compile(inputStream);
+                        count.incrementAndGet();
+                    } catch (IOException | RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to parse " + resource, e);
+                    }
+                })
+                .scan();
+        LOGGER.fine("Precompiled " + count.get() + " Mustache templates.");
+        return count.get();
+    }
+
+    /**
+     * Watches a directory of templates, such as <code>src/main/resources</code>, and recompiles
+     * templates when they change. The directory is the classpath root, so
+     * <code>dir/hello.en.txt.mustache</code> replaces the resource <code>/hello.en.txt.mustache</code>.
+     * Changes to a template are seen by every bundle; new templates by bundles looked up afterwards.
+     * @param directory The directory to watch.
+     * @return A Closeable that stops watching.
+     */
+    public Closeable watch(Path directory) {
+        try {
+            WatchService watcher = FileSystems.getDefault().newWatchService();
+            try (Stream<Path> paths = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                    path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+            Thread thread = new Thread(() -> watchLoop(directory, watcher), "skillz-mustache-watch");
+            thread.setDaemon(true);
+            thread.start();
+            LOGGER.info("Watching " + directory + " for Mustache template changes.");
+            return watcher;
+        } catch (IOException e) {
+            throw new SkillzException("Unable to watch " + directory, e);
+        }
+    }
+
+    private void watchLoop(Path directory, WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path parent = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path file = parent.resolve((Path) event.context());
+                    if (file.toString().endsWith(EXTENSION) && Files.isRegularFile(file)) {
+                        reload(directory, file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            LOGGER.fine("Stopped watching " + directory);
+        }
+    }
+
+    private void reload(Path directory, Path file) {
+        String resource = "/" + directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+        Template template = files.computeIfAbsent(resource, Template::new);
+        boolean added = template.mustache == null;
+        try (InputStream in = Files.newInputStream(file)) {
+            template.compile(in);
+            LOGGER.info("Recompiled " + resource);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to recompile " + file, e);
+        }
+        if (added) {
+            // A template that didn't exist before, so bundles need to resolve again. This happens
+            // after the compile so a lookup in between can't cache the missing template again.
+            bundles.clear();
+        }
+    }
+
+    @Nullable
+    private Template resolve(String bundleName, @Nullable String languageCode, String fileType) {
+        if (!Strings.isNullOrEmpty(languageCode)) {
+            Template template = load(bundleName + "." + languageCode + "." + fileType + EXTENSION);
+            if (template != null) {
+                return template;
+            }
+        }
+        return load(bundleName + "." + fileType + EXTENSION);
+    }
+
+    @Nullable
+    private Template load(String resource) {
+        Template template = files.computeIfAbsent(resource, Template::new);
+        if (template.mustache == null) {
+            URL url = MustacheTemplates.class.getResource(resource);
+            if (url == null) {
+                return null;
+            }
+            try (InputStream in = url.openStream()) {
+                template.compile(in);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to parse " + url.toExternalForm(), e);
+                return null;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * A single template file. The compiled Mustache is replaced when the file is reloaded.
+     */
+    private class Template {
+        private final String resource;
+        private volatile Mustache mustache;
+
+        private Template(String resource) {
+            this.resource = resource;
+        }
+
+        private synchronized void compile(InputStream in) throws IOException {
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                this.mustache = factory.compile(reader, resource);
+            }
+        }
+    }
+
+    /**
+     * The speech, text and card templates for a bundle name and language. Any of them may be null.
+     */
+    public static final class Templates {
+        @Nullable
+        private final Template ssml;
+        @Nullable
+        private final Template txt;
+        @Nullable
+        private final Template card;
+
+        private Templates(@Nullable Template ssml, @Nullable Template txt, @Nullable Template card) {
+            this.ssml = ssml;
+            this.txt = txt;
+            this.card = card;
+        }
+
+        @Nullable
+        public Mustache getSsml() {
+            return ssml == null ? null : ssml.mustache;
+        }
+
+        @Nullable
+        public Mustache getTxt() {
+            return txt == null ? null : txt.mustache;
+        }
+
+        @Nullable
+        public Mustache getCard() {
+            return card == null ? null : card.mustache;
+        }
+    }
+
+    /**
+     * Holds the shared registry, created and precompiled on first use.
+     */
+    private static class Shared {
+        private static final MustacheTemplates INSTANCE = create();
+
+        private static MustacheTemplates create() {
+            MustacheTemplates templates = new MustacheTemplates();
+            templates.precompile();
+            String watch = System.getProperty(WATCH_PROPERTY);
+            if (!Strings.isNullOrEmpty(watch)) {
+                templates.watch(FileSystems.getDefault().getPath(watch));
+            }
+            return templates;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.speechlet.SpeechletRequest;
+import com.github.mustachejava.Mustache;
+
+import java.io.Writer;
+
+/**
+ * A reusable, per-thread Writer and template context for rendering Mustache templates into a
+ * String. Rendering SSML drops newlines and deletes runs of two or more spaces as the text is
+ * written, rather than with regular expressions afterwards.
+ * <p>
+ * The context exposes <code>response</code>, <code>request</code> and <code>session</code> to
+ * templates, the same names the old Map context used.
+ * </p>
+ */
+final class RenderBuffer extends Writer {
+    /**
+     * Buffers that grew larger than this aren't kept for the next render.
+     */
+    private static final int MAX_RETAINED = 64 * 1024;
+    private static final ThreadLocal<RenderBuffer> BUFFERS = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private final StringBuilder buffer = new StringBuilder(1024);
+    private final Context context = new Context();
+    private boolean ssml;
+    private int pendingSpaces;
+    private boolean inUse;
+
+    /**
+     * Renders a template.
+     * @param template The template.
+     * @param ssml Whether to strip newlines and runs of spaces as SSML output.
+     * @param response The response object.
+     * @param request The SpeechletRequest
+     * @param session The Session
+     * @return The rendered text.
+     */
+    static String render(Mustache template, boolean ssml, Object response, SpeechletRequest request, Session session) {
+        RenderBuffer current = BUFFERS.get();
+        // A template that renders another bundle while it is being rendered gets its own buffer.
+        RenderBuffer target = current.inUse ? new RenderBuffer() : current;
+        target.inUse = true;
+        try {
+            target.ssml = ssml;
+            target.pendingSpaces = 0;
+            target.context.response = response;
+            target.context.request = request;
+            target.context.session = session;
+            template.execute(target, target.context);
+            target.finish();
+            return target.buffer.toString();
+        } finally {
+            target.context.response = null;
+            target.context.request = null;
+            target.context.session = null;
+            if (target.buffer.capacity() > MAX_RETAINED) {
+                target.buffer.setLength(0);
+                target.buffer.trimToSize();
+            } else {
+                target.buffer.setLength(0);
+            }
+            target.inUse = false;
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        filter((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        if (!ssml) {
+            buffer.append(chars, offset, length);
+            return;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            filter(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String s, int offset, int length) {
+        if (!ssml) {
+            buffer.append(s, offset, offset + length);
+            return;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            filter(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void filter(char c) {
+        if (!ssml) {
+            buffer.append(c);
+        } else if (c == '\n') {
+            // Newlines are dropped, so spaces on either side of one form a single run.
+        } else if (c == ' ') {
+            pendingSpaces++;
+        } else {
+            flushSpaces();
+            buffer.append(c);
+        }
+    }
+
+    private void finish() {
+        if (ssml) {
+            flushSpaces();
+        }
+    }
+
+    private void flushSpaces() {
+        if (pendingSpaces == 1) {
+            buffer.append(' ');
+        }
+        pendingSpaces = 0;
+    }
+
+    /**
+     * The values templates are rendered against.
+     */
+    @SuppressWarnings("unused")
+    static final class Context {
+        private Object response;
+        private SpeechletRequest request;
+        private Session session;
+
+        public Object getResponse() {
+            return response;
+        }
+
+        public SpeechletRequest getRequest() {
+            return request;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+    }
+}
@@ -22,13 +22,19 @@ import com.amazon.speech.speechlet.User;
 import com.amazon.speech.ui.OutputSpeech;
 import com.amazon.speech.ui.PlainTextOutputSpeech;
 import com.amazon.speech.ui.SsmlOutputSpeech;
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
 import org.junit.Test;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -51,6 +57,7 @@ public class MustacheBundleTest {
                 mock(IntentRequest.class), SESSION);
         assertTrue(speech instanceof PlainTextOutputSpeech);
         assertEquals("List: one two three", ((PlainTextOutputSpeech) speech).getText().trim());
+        assertNull(bundle.createCardContent(Arrays.asList("one", "two", "three"), mock(IntentRequest.class), SESSION));
     }
 
 
@@ -83,4 +90,15 @@ public class MustacheBundleTest {
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSsmlWhitespace(){
+        String source = "<speak>\n  <s>{{response}}</s>\n <s>one  two </s> \n\n<s>three\n four</s>   </speak> ";
+        Mustache template = new DefaultMustacheFactory().compile(new StringReader(source), "whitespace");
+        StringWriter expected = new StringWriter();
+        template.execute(expected, Collections.singletonMap("response", "a b  c"));
+        assertEquals(expected.toString().replaceAll("\n", "").replaceAll("  +", ""),
+                RenderBuffer.render(template, true, "a b  c", mock(IntentRequest.class), SESSION));
+        assertEquals(expected.toString(), RenderBuffer.render(template, false, "a b  c", mock(IntentRequest.class), SESSION));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.format;
+
+import com.amazon.speech.speechlet.IntentRequest;
+import com.amazon.speech.speechlet.Session;
+import com.amazon.speech.ui.PlainTextOutputSpeech;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class MustacheTemplatesTest {
+
+    @Test
+    public void testSharedTemplates() {
+        MustacheTemplates templates = new MustacheTemplates();
+        assertTrue(templates.precompile() >= 6);
+        MustacheTemplates.Templates alltypes = templates.get("/alltypes", "en");
+        assertSame(alltypes, templates.get("/alltypes", "en"));
+        assertNotNull(alltypes.getSsml());
+        assertNotNull(alltypes.getCard());
+        // Falls back to the template with no language.
+        assertNotNull(templates.get("/simpletest", "fr").getTxt());
+        assertNull(templates.get("/simpletest", "fr").getSsml());
+        assertSame(templates.get("/langswitch", "es").getTxt(), templates.get("/langswitch", "es").getTxt());
+    }
+
+    @Test
+    public void testBrokenTemplatesAreSkipped() {
+        MustacheTemplates templates = new MustacheTemplates();
+        templates.precompile();
+        assertNull(templates.get("/broken", null).getTxt());
+        assertNotNull(templates.get("/simpletest", null).getTxt());
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        Path directory = Files.createTempDirectory("skillz-mustache");
+        Path file = directory.resolve("hot.txt.mustache");
+        MustacheTemplates templates = new MustacheTemplates();
+        assertNull(templates.get("/hot", null).getTxt());
+        try (Closeable ignored = templates.watch(directory)) {
+            Files.write(file, "Hello {{response}}".getBytes(StandardCharsets.UTF_8));
+            waitFor(() -> templates.get("/hot", null).getTxt() != null);
+            MustacheBundle bundle = new MustacheBundle(templates, "/hot", null);
+            // The file can be seen while it is still empty, so wait for the content.
+            waitFor(() -> text(bundle).startsWith("Hello"));
+            assertEquals("Hello Gracie", text(bundle));
+
+            Files.write(file, "Goodnight {{response}}".getBytes(StandardCharsets.UTF_8));
+            waitFor(() -> text(bundle).startsWith("Goodnight"));
+            assertEquals("Goodnight Gracie", text(bundle));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static String text(MustacheBundle bundle) {
+        return ((PlainTextOutputSpeech) bundle.createOutputSpeech("Gracie", mock(IntentRequest.class),
+                mock(Session.class))).getText();
+    }
+
+    private static void waitFor(Supplier<Boolean> condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 20000;
+        while (!condition.get() && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.get());
+    }
+}
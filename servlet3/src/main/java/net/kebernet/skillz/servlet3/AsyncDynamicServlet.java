@@ -0,0 +1,207 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.servlet3;
+
+import com.amazon.speech.json.SpeechletResponseEnvelope;
+import net.kebernet.skillz.impl.DynamicServlet;
+import net.kebernet.skillz.impl.DynamicSpeechlet;
+
+import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A DynamicServlet that releases the container thread while a skill method's CompletionStage
+ * completes. The response is formatted when the stage completes and written with a
+ * non-blocking WriteListener.
+ * <p>
+ * Requests the container doesn't allow to go async, and responses that are already complete
+ * when the skill method returns, are written on the container thread as before.
+ * </p>
+ * <p>
+ * A suspended request that hasn't completed within {@link #TIMEOUT_PROPERTY} milliseconds,
+ * 8 seconds by default, gets an error, and the response is discarded when it finally completes.
+ * </p>
+ */
+public class AsyncDynamicServlet extends DynamicServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Logger LOGGER = Logger.getLogger(AsyncDynamicServlet.class.getCanonicalName());
+    /**
+     * System property with how long, in milliseconds, a suspended request may wait for its response.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final String TIMEOUT_PROPERTY = "net.kebernet.skillz.asyncTimeout";
+    static final long TIMEOUT = Long.getLong(TIMEOUT_PROPERTY, 8000L);
+
+    /**
+     * Creates a servlet for a single skill.
+     * @param speechlet The speechlet for the skill.
+     */
+    public AsyncDynamicServlet(DynamicSpeechlet speechlet) {
+        super(speechlet);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!req.isAsyncSupported()) {
+            super.doPost(req, resp);
+            return;
+        }
+        CompletableFuture<SpeechletResponseEnvelope> response;
+        try {
+            response = dispatchAsync(readRequest(req)).toCompletableFuture();
+        } catch (Exception e) {
+            sendError(resp, e);
+            return;
+        }
+        if (response.isDone()) {
+            byte[] body;
+            try {
+                body = toBytes(response.join());
+            } catch (Exception e) {
+                sendError(resp, unwrap(e));
+                return;
+            }
+            startResponse(resp, body.length);
+            try (OutputStream out = resp.getOutputStream()) {
+                out.write(body);
+            }
+            return;
+        }
+        AsyncContext async = req.startAsync(req, resp);
+        async.setTimeout(TIMEOUT);
+        AtomicBoolean finished = new AtomicBoolean();
+        async.addListener(new TimeoutListener(resp, finished));
+        response.whenComplete((envelope, error) -> complete(async, resp, finished, envelope, error));
+    }
+
+    /**
+     * Formats a response that has completed and starts writing it, unless the request has
+     * already timed out.
+     */
+    private void complete(AsyncContext async, HttpServletResponse resp, AtomicBoolean finished,
+                          @Nullable SpeechletResponseEnvelope envelope, @Nullable Throwable error) {
+        if (!finished.compareAndSet(false, true)) {
+            LOGGER.fine("Discarding the response for a request that has already finished");
+            return;
+        }
+        try {
+            if (error != null) {
+                throw error;
+            }
+            byte[] body = toBytes(envelope);
+            startResponse(resp, body.length);
+            ServletOutputStream out = resp.getOutputStream();
+            out.setWriteListener(new ResponseWriter(async, out, body));
+        } catch (Throwable e) {
+            try {
+                sendError(resp, unwrap(e));
+            } finally {
+                async.complete();
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Sends an error for a request that has waited too long, and marks it finished so the
+     * response isn't written when it eventually completes.
+     */
+    private final class TimeoutListener implements AsyncListener {
+        private final HttpServletResponse resp;
+        private final AtomicBoolean finished;
+
+        private TimeoutListener(HttpServletResponse resp, AtomicBoolean finished) {
+            this.resp = resp;
+            this.finished = finished;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (finished.compareAndSet(false, true)) {
+                try {
+                    sendError(resp, new TimeoutException("No response within " + TIMEOUT + "ms"));
+                } finally {
+                    event.getAsyncContext().complete();
+                }
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finished.set(true);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Writes the body whenever the container can accept it, and completes the request once it
+     * has all been written.
+     */
+    private static final class ResponseWriter implements WriteListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final byte[] body;
+        private boolean written;
+
+        private ResponseWriter(AsyncContext async, ServletOutputStream out, byte[] body) {
+            this.async = async;
+            this.out = out;
+            this.body = body;
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            while (out.isReady()) {
+                if (written) {
+                    async.complete();
+                    return;
+                }
+                out.write(body);
+                written = true;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            LOGGER.log(Level.WARNING, "Unable to write response", t);
+            async.complete();
+        }
+    }
+}
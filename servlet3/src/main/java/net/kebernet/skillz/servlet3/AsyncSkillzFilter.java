@@ -0,0 +1,56 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.servlet3;
+
+import net.kebernet.skillz.FormatterMappings;
+import net.kebernet.skillz.SkillzFilter;
+import net.kebernet.skillz.TypeFactory;
+import net.kebernet.skillz.impl.DefaultTypeFactory;
+import net.kebernet.skillz.impl.Registry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * A SkillzFilter that serves each skill with an {@link AsyncDynamicServlet}, so skill methods
+ * returning a CompletionStage don't hold a container thread while they complete. The filter
+ * has to be registered with async support enabled, for example with
+ * <code>&lt;async-supported&gt;true&lt;/async-supported&gt;</code> in web.xml; otherwise
+ * every request is handled synchronously.
+ */
+@Singleton
+public class AsyncSkillzFilter extends SkillzFilter {
+
+    /**
+     * The standard Dependency-Injected constructor.
+     * @param registry The registry to use.
+     * @param factory The TypeFactory to build instances with.
+     * @param mappings FormatterMappings for building SpeechletResponses
+     */
+    @Inject
+    public AsyncSkillzFilter(Registry registry, TypeFactory factory, FormatterMappings mappings) {
+        super(registry, factory, mappings, AsyncDynamicServlet::new);
+    }
+
+    /**
+     * Creates a filter with a new Registry, a DefaultTypeFactory, and a FormatterMappings
+     * instance.
+     */
+    @SuppressWarnings("unused")
+    public AsyncSkillzFilter() {
+        this(new Registry(), new DefaultTypeFactory(), new FormatterMappings());
+    }
+}
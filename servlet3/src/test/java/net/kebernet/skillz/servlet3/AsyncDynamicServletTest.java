@@ -0,0 +1,217 @@
+/*
+ *    Copyright (c) 2016 Robert Cooper
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package net.kebernet.skillz.servlet3;
+
+import com.amazon.speech.Sdk;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.kebernet.skillz.FormatterMappings;
+import net.kebernet.skillz.annotation.Intent;
+import net.kebernet.skillz.annotation.ResponseFormatter;
+import net.kebernet.skillz.annotation.Skill;
+import net.kebernet.skillz.impl.DefaultTypeFactory;
+import net.kebernet.skillz.impl.DynamicSpeechlet;
+import net.kebernet.skillz.impl.Registry;
+import net.kebernet.skillz.util.Formatters;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncDynamicServletTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static CompletableFuture<String> pending;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final AsyncContext async = mock(AsyncContext.class);
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+    private WriteListener listener;
+
+    @BeforeClass
+    public static void disableSignatureCheck() {
+        System.setProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY, "true");
+    }
+
+    @AfterClass
+    public static void enableSignatureCheck() {
+        System.clearProperty(Sdk.DISABLE_REQUEST_SIGNATURE_CHECK_SYSTEM_PROPERTY);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        pending = new CompletableFuture<>();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                listener = writeListener;
+            }
+
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+        });
+    }
+
+    @Test
+    public void containerThreadIsReleasedUntilTheStageCompletes() throws Exception {
+        servlet().doPost(request("pending", true), response);
+        verify(async, never()).complete();
+        assertNull(listener);
+
+        pending.complete("Finally.");
+        assertNotNull(listener);
+        verify(response).setStatus(HttpServletResponse.SC_OK);
+        listener.onWritePossible();
+        verify(async).complete();
+        verify(response).setContentLength(bytes.size());
+        assertEquals("Finally.", MAPPER.readTree(bytes.toByteArray()).get("response").get("outputSpeech").get("text").asText());
+    }
+
+    @Test
+    public void failedStagesSendAnError() throws Exception {
+        servlet().doPost(request("pending", true), response);
+        pending.completeExceptionally(new IllegalStateException("Backend unavailable"));
+        verify(response).sendError(eq(HttpServletResponse.SC_INTERNAL_SERVER_ERROR), anyString());
+        verify(async).complete();
+    }
+
+    @Test
+    public void timedOutRequestsSendAnErrorAndDiscardTheResponse() throws Exception {
+        servlet().doPost(request("pending", true), response);
+        verify(async).setTimeout(AsyncDynamicServlet.TIMEOUT);
+        ArgumentCaptor<AsyncListener> timeout = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(async).addListener(timeout.capture());
+
+        timeout.getValue().onTimeout(new AsyncEvent(async));
+        verify(response).sendError(eq(HttpServletResponse.SC_INTERNAL_SERVER_ERROR), anyString());
+        verify(async).complete();
+
+        pending.complete("Too late.");
+        assertNull(listener);
+        verify(response, never()).setStatus(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    public void completedResponsesAreWrittenDirectly() throws Exception {
+        HttpServletRequest request = request("now", true);
+        servlet().doPost(request, response);
+        verify(request, never()).startAsync(request, response);
+        verify(response).setContentLength(bytes.size());
+        assertEquals("Now.", MAPPER.readTree(bytes.toByteArray()).get("response").get("outputSpeech").get("text").asText());
+    }
+
+    @Test
+    public void requestsWithoutAsyncSupportWait() throws Exception {
+        pending.complete("Waited.");
+        HttpServletRequest request = request("pending", false);
+        servlet().doPost(request, response);
+        verify(request, never()).startAsync(request, response);
+        assertEquals("Waited.", MAPPER.readTree(bytes.toByteArray()).get("response").get("outputSpeech").get("text").asText());
+    }
+
+    private static AsyncDynamicServlet servlet() {
+        Registry registry = new Registry(new HashSet<>(Collections.singletonList(AsyncTestSkill.class)));
+        return new AsyncDynamicServlet(new DynamicSpeechlet(registry.getDispatchTable("/async"), new FormatterMappings(),
+                registry, new DefaultTypeFactory()));
+    }
+
+    private HttpServletRequest request(String intent, boolean asyncSupported) throws Exception {
+        String body = "{\"version\":\"1.0\",\"session\":{\"new\":false,\"sessionId\":\"session\"," +
+                "\"application\":{\"applicationId\":\"application\"},\"attributes\":{}," +
+                "\"user\":{\"userId\":\"user\"}},\"request\":{\"type\":\"IntentRequest\",\"requestId\":\"request\"," +
+                "\"timestamp\":\"2016-10-24T00:00:00Z\",\"locale\":\"en-US\",\"intent\":{\"name\":\"" + intent + "\",\"slots\":{}}}}";
+        ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContentLength()).thenReturn(-1);
+        when(request.isAsyncSupported()).thenReturn(asyncSupported);
+        when(request.startAsync(request, response)).thenReturn(async);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+        });
+        return request;
+    }
+
+    @Skill(path = "/async")
+    public static class AsyncTestSkill {
+
+        @Intent("pending")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public CompletionStage<String> pending() {
+            return pending;
+        }
+
+        @Intent("now")
+        @ResponseFormatter(Formatters.SimplePlainTextTell.class)
+        public CompletionStage<String> now() {
+            return CompletableFuture.completedFuture("Now.");
+        }
+    }
+}